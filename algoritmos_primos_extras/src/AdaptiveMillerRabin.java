@@ -0,0 +1,290 @@
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * AdaptiveMillerRabin.java
+ *
+ * Miller-Rabin con la cantidad de rondas elegida según el tamaño de n y una cota de error
+ * (2^-errorBits), en lugar de un número fijo:
+ * - n < 3.3·10^24 (~81 bits): bases fijas que son determinísticas para ese rango (la menor
+ *   lista que alcanza: {2} hasta 2047, {2, 3} hasta 1373653, ..., los 13 primos hasta 41
+ *   hasta 3317044064679887385961981). Hasta 2^63 en long con LongPrimality.
+ * - Mayores, InputModel.RANDOM (candidatos elegidos al azar, como en la generación de
+ *   primos): la menor t tal que la cota de Damgård-Landrock-Pomerance p(k, t) para k bits
+ *   no supera 2^-errorBits. Para 1024 bits y 2^-80 alcanzan 3 rondas en lugar de 40.
+ * - InputModel.ADVERSARIAL (n elegido por alguien que busca engañar a la prueba): la cota de
+ *   peor caso 4^-t, es decir ⌈errorBits / 2⌉ rondas.
+ * - Se detiene en el primer testigo de compuesto; antes aplica SmallPrimeFilter.
+ * - Cada resultado dice cuántas rondas se planearon y cuántas se usaron; stats() acumula
+ *   los totales de todas las llamadas (y PrimalityMetrics los cuenta por tamaño).
+ *
+ * Uso: java -cp bin AdaptiveMillerRabin [bits de error]   (tabla de rondas y comparación)
+ */
+public final class AdaptiveMillerRabin {
+
+    /** Procedencia de las entradas: decide qué cota de error se aplica. */
+    public enum InputModel {
+        /** Candidatos aleatorios: cotas de Damgård-Landrock-Pomerance. */
+        RANDOM,
+        /** Cualquier n (peor caso): 4^-t. */
+        ADVERSARIAL
+    }
+
+    /** Cota de error por defecto: 2^-80. */
+    public static final int DEFAULT_ERROR_BITS = 80;
+
+    /** Límites (exclusivos) y cantidad de bases primas 2, 3, 5, ... determinísticas debajo de cada uno. */
+    private static final BigInteger[] DETERMINISTIC_LIMITS = {
+            BigInteger.valueOf(2_047L), BigInteger.valueOf(1_373_653L), BigInteger.valueOf(25_326_001L),
+            BigInteger.valueOf(3_215_031_751L), BigInteger.valueOf(2_152_302_898_747L),
+            BigInteger.valueOf(3_474_749_660_383L), BigInteger.valueOf(341_550_071_728_321L),
+            new BigInteger("3825123056546413051"), new BigInteger("318665857834031151167461"),
+            new BigInteger("3317044064679887385961981")};
+    private static final int[] DETERMINISTIC_BASES = {1, 2, 3, 4, 5, 6, 7, 9, 12, 13};
+    private static final long[] PRIME_BASES = {2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, 41};
+    private static final BigInteger LONG_LIMIT = BigInteger.ONE.shiftLeft(63);
+    private static final BigInteger TWO = BigInteger.valueOf(2);
+
+    private static final LongAdder CALLS = new LongAdder();
+    private static final LongAdder DETERMINISTIC = new LongAdder();
+    private static final LongAdder PLANNED = new LongAdder();
+    private static final LongAdder USED = new LongAdder();
+
+    private AdaptiveMillerRabin() {
+    }
+
+    /** Resultado de una prueba. */
+    public static final class Result {
+        private final boolean prime;
+        private final int planned;
+        private final int used;
+        private final boolean deterministic;
+
+        Result(boolean prime, int planned, int used, boolean deterministic) {
+            this.prime = prime;
+            this.planned = planned;
+            this.used = used;
+            this.deterministic = deterministic;
+        }
+
+        public boolean isPrime() {
+            return prime;
+        }
+
+        /** Rondas que se harían si n pasara todas (0 si lo decidió el filtro). */
+        public int plannedRounds() {
+            return planned;
+        }
+
+        /** Rondas hechas: menos que las planeadas si apareció un testigo de compuesto. */
+        public int usedRounds() {
+            return used;
+        }
+
+        /** true si el resultado es exacto (bases determinísticas o filtro). */
+        public boolean isDeterministic() {
+            return deterministic;
+        }
+
+        @Override
+        public String toString() {
+            return (prime ? "primo" : "compuesto") + " (" + used + "/" + planned + " rondas"
+                    + (deterministic ? ", exacto)" : ")");
+        }
+    }
+
+    // ============================
+    // Cantidad de rondas
+    // ============================
+
+    /**
+     * Rondas para n de bits bits con error <= 2^-errorBits según model; para n en el rango
+     * determinístico es la cantidad de bases fijas (y el error es 0).
+     */
+    public static int roundsFor(int bits, int errorBits, InputModel model) {
+        if (bits < 1 || errorBits < 1) throw new IllegalArgumentException("bits y errorBits deben ser >= 1");
+        if (bits <= 81) {
+            // el límite de n depende de su valor, no solo de bits: se toma el mayor de ese tamaño
+            return deterministicBases(BigInteger.ONE.shiftLeft(bits).subtract(BigInteger.ONE));
+        }
+        int worst = (errorBits + 1) / 2;
+        if (model == InputModel.ADVERSARIAL) return worst;
+        for (int t = 1; t < worst; t++) {
+            if (log2RandomError(bits, t) <= -errorBits) return t;
+        }
+        return worst;
+    }
+
+    /** Cantidad de bases primas determinísticas para n, o 0 si n está fuera del rango. */
+    static int deterministicBases(BigInteger n) {
+        for (int i = 0; i < DETERMINISTIC_LIMITS.length; i++) {
+            if (n.compareTo(DETERMINISTIC_LIMITS[i]) < 0) return DETERMINISTIC_BASES[i];
+        }
+        return 0;
+    }
+
+    /**
+     * log2 de la cota de Damgård-Landrock-Pomerance (1993) para la probabilidad de que un
+     * impar aleatorio de k bits que pasa t rondas sea compuesto; el mínimo de las que valen
+     * para (k, t), y nunca más que el peor caso 4^-t.
+     */
+    static double log2RandomError(int k, int t) {
+        double lk = log2(k);
+        double best = -2.0 * t;
+        if (t == 1) best = Math.min(best, 2 * lk + 2 * (2 - Math.sqrt(k)));
+        if ((t == 2 && k >= 88) || (t >= 3 && 9 * t <= k && k >= 21)) {
+            best = Math.min(best, 1.5 * lk + t - 0.5 * log2(t) + 2 * (2 - Math.sqrt((double) t * k)));
+        }
+        if (9 * t >= k && 4 * t <= k && k >= 21) {
+            best = Math.min(best, log2Sum(log2(7.0 / 20) + lk - 5.0 * t,
+                    log2(1.0 / 7) + 3.75 * lk - k / 2.0 - 2.0 * t,
+                    log2(12) + lk - k / 4.0 - 3.0 * t));
+        }
+        if (4 * t >= k && k >= 21) best = Math.min(best, log2(1.0 / 7) + 3.75 * lk - k / 2.0 - 2.0 * t);
+        return best;
+    }
+
+    private static double log2(double v) {
+        return Math.log(v) / Math.log(2);
+    }
+
+    /** log2(2^a + 2^b + 2^c) sin desbordar (los términos pueden ser ~2^-2000). */
+    private static double log2Sum(double a, double b, double c) {
+        double max = Math.max(a, Math.max(b, c));
+        return max + log2(Math.pow(2, a - max) + Math.pow(2, b - max) + Math.pow(2, c - max));
+    }
+
+    // ============================
+    // Prueba
+    // ============================
+
+    /** Prueba n con error <= 2^-errorBits según model (exacta si n < 3.3·10^24). */
+    public static Result test(BigInteger n, int errorBits, InputModel model) {
+        return record(PrimalityMetrics.start(), n, run(n, errorBits, model, true));
+    }
+
+    /** Igual que test, para n que SmallPrimeFilter.shared() ya dejó pasar (no lo repite). */
+    static Result testUnfiltered(BigInteger n, int errorBits, InputModel model) {
+        return record(PrimalityMetrics.start(), n, run(n, errorBits, model, false));
+    }
+
+    private static Result record(long t0, BigInteger n, Result r) {
+        PrimalityMetrics.MILLER_RABIN_ADAPTIVE.record(t0, n.bitLength(), r.prime);
+        PrimalityMetrics.MILLER_RABIN_ADAPTIVE.rounds(n.bitLength(), r.used);
+        CALLS.increment();
+        if (r.deterministic) DETERMINISTIC.increment();
+        PLANNED.add(r.planned);
+        USED.add(r.used);
+        return r;
+    }
+
+    private static Result run(BigInteger n, int errorBits, InputModel model, boolean filter) {
+        if (errorBits < 1) throw new IllegalArgumentException("errorBits debe ser >= 1: " + errorBits);
+        if (n.compareTo(TWO) < 0) return new Result(false, 0, 0, true);
+        if (filter) {
+            SmallPrimeFilter.Verdict v = SmallPrimeFilter.shared().check(n);
+            if (v != SmallPrimeFilter.Verdict.UNKNOWN) return new Result(v == SmallPrimeFilter.Verdict.PRIME, 0, 0, true);
+        }
+
+        int bits = n.bitLength();
+        int bases = deterministicBases(n);
+        if (bases > 0) {
+            boolean prime;
+            int used;
+            if (n.compareTo(LONG_LIMIT) < 0) {
+                int witness = LongPrimality.firstWitness(n.longValue(), Arrays.copyOf(PRIME_BASES, bases));
+                prime = witness < 0;
+                used = prime ? bases : witness + 1;
+            } else {
+                ModContext ctx = new ModContext(n);
+                prime = true;
+                used = 0;
+                while (prime && used < bases) prime = ctx.strongProbablePrime(BigInteger.valueOf(PRIME_BASES[used++]));
+            }
+            return new Result(prime, bases, used, true);
+        }
+
+        int planned = roundsFor(bits, errorBits, model);
+        ModContext ctx = new ModContext(n);
+        Random witnesses = PrimalityAllTests.witnessSource().random(n);
+        for (int i = 0; i < planned; i++) {
+            if (!ctx.strongProbablePrime(WitnessSource.uniform(TWO, ctx.nMinus1(), witnesses))) return new Result(false, planned, i + 1, false);
+        }
+        return new Result(true, planned, planned, false);
+    }
+
+    // ============================
+    // Totales
+    // ============================
+
+    /** Totales acumulados de todas las llamadas a test. */
+    public static final class Stats {
+        public final long calls;
+        public final long deterministic;
+        public final long plannedRounds;
+        public final long usedRounds;
+
+        Stats(long calls, long deterministic, long plannedRounds, long usedRounds) {
+            this.calls = calls;
+            this.deterministic = deterministic;
+            this.plannedRounds = plannedRounds;
+            this.usedRounds = usedRounds;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d llamadas (%d exactas), rondas usadas %d de %d planeadas (%.2f por llamada)",
+                    calls, deterministic, usedRounds, plannedRounds, calls == 0 ? 0.0 : (double) usedRounds / calls);
+        }
+    }
+
+    public static Stats stats() {
+        return new Stats(CALLS.sum(), DETERMINISTIC.sum(), PLANNED.sum(), USED.sum());
+    }
+
+    public static void resetStats() {
+        CALLS.reset();
+        DETERMINISTIC.reset();
+        PLANNED.reset();
+        USED.reset();
+    }
+
+    // ============================
+    // Tabla y comparación
+    // ============================
+
+    public static void main(String[] args) {
+        int errorBits = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ERROR_BITS;
+        System.out.printf("Rondas para error <= 2^-%d%n%8s %10s %12s%n", errorBits, "bits", "aleatorio", "adversario");
+        for (int bits : new int[]{32, 64, 81, 128, 256, 512, 1024, 2048, 4096}) {
+            System.out.printf("%8d %10d %12d%n", bits, roundsFor(bits, errorBits, InputModel.RANDOM),
+                    roundsFor(bits, errorBits, InputModel.ADVERSARIAL));
+        }
+
+        // búsqueda de primos de 1024 bits: impares aleatorios, la mayoría compuestos
+        Random rnd = new Random(1);
+        BigInteger[] candidates = new BigInteger[4000];
+        for (int i = 0; i < candidates.length; i++) candidates[i] = new BigInteger(1024, rnd).setBit(1023).setBit(0);
+        int fixedRounds = (errorBits + 1) / 2;
+        PrimalityMetrics.enable();
+        for (int pass = 0; pass < 2; pass++) { // la primera pasada calienta la JVM
+            PrimalityMetrics.reset();
+            resetStats();
+            long t0 = System.nanoTime();
+            int fixedPrimes = 0;
+            for (BigInteger n : candidates) if (PrimalityAllTests.millerRabin(n, fixedRounds)) fixedPrimes++;
+            long t1 = System.nanoTime();
+            int adaptivePrimes = 0;
+            for (BigInteger n : candidates) if (test(n, errorBits, InputModel.RANDOM).isPrime()) adaptivePrimes++;
+            long t2 = System.nanoTime();
+            if (pass == 0) continue;
+            System.out.printf("%n%d impares de 1024 bits%n", candidates.length);
+            System.out.printf(Locale.ROOT, "fijo (%d rondas): %d primos, %d rondas, %.1f ms%n", fixedRounds, fixedPrimes,
+                    PrimalityMetrics.MILLER_RABIN.getRounds(), (t1 - t0) / 1e6);
+            System.out.printf(Locale.ROOT, "adaptativo:       %d primos, %s, %.1f ms%n", adaptivePrimes, stats(), (t2 - t1) / 1e6);
+        }
+    }
+}
@@ -0,0 +1,297 @@
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Aks.java
+ *
+ * Prueba AKS (Agrawal-Kayal-Saxena) determinística, en la versión revisada con la cota de
+ * Lenstra para la cantidad de testigos:
+ * 1. Si n = a^b con b > 1, es compuesto.
+ * 2. r = el menor entero con ord_r(n) > log2(n)^2.
+ * 3. Si n tiene un factor a <= r (a < n), es compuesto. 4. Si n <= r, es primo.
+ * 5. Para a = 1 .. floor(sqrt(phi(r)) · log2 n): (X + a)^n ≡ X^n + a (mod X^r - 1, n).
+ *    Si alguna falla, es compuesto; si no, es primo.
+ * Aritmética de polinomios módulo (X^r - 1, n):
+ * - El producto se hace con sustitución de Kronecker: cada polinomio se empaqueta en un
+ *   BigInteger (un coeficiente por "ranura" de bytes, con espacio para r·n^2), se hace una
+ *   sola multiplicación (o cuadrado) de BigInteger y se desempaquetan las ranuras, sumando
+ *   el coeficiente i + r sobre el i (X^r = 1).
+ * - Para n < 2^31 los coeficientes se guardan en long[] y se reducen en aritmética long;
+ *   para n mayores, en BigInteger[].
+ * - Multiplicar por (X + a) no necesita Kronecker: es un desplazamiento y una suma.
+ * - Las comprobaciones del paso 5 son independientes y se reparten en paralelo.
+ * Costo: polinómico pero alto; en la práctica solo es razonable hasta ~32 bits.
+ */
+public final class Aks {
+
+    /** Tamaño hasta el que AKS termina en segundos o decenas de segundos (guía del menú y los benchmarks). */
+    public static final int PRACTICAL_BITS = 32;
+
+    private static final long LONG_COEFFICIENT_LIMIT = 1L << 31;
+
+    private Aks() {
+    }
+
+    public static boolean isPrime(BigInteger n) {
+        return isPrime(n, true);
+    }
+
+    /** AKS completo; parallel indica si el paso 5 usa varios hilos. */
+    public static boolean isPrime(BigInteger n, boolean parallel) {
+        if (n.compareTo(BigInteger.TWO) < 0) return false;
+        // 1. potencias perfectas
+        if (isPerfectPower(n)) return false;
+
+        // 2. el menor r con ord_r(n) > log2(n)^2
+        double log2n = log2(n);
+        int maxOrder = (int) Math.floor(log2n * log2n);
+        int r = smallestR(n, maxOrder);
+
+        // 3. factores a <= r
+        long upTo = n.bitLength() <= 62 ? Math.min(r, n.longValue() - 1) : r;
+        for (int a = 2; a <= upTo; a++) {
+            if (n.mod(BigInteger.valueOf(a)).signum() == 0) return false;
+        }
+        // 4.
+        if (n.compareTo(BigInteger.valueOf(r)) <= 0) return true;
+
+        // 5. identidades polinómicas
+        int aMax = (int) Math.floor(Math.sqrt(phi(r)) * log2n);
+        Ring ring = n.compareTo(BigInteger.valueOf(LONG_COEFFICIENT_LIMIT)) < 0
+                ? new LongRing(n.longValue(), r)
+                : new BigRing(n, r);
+        IntStream as = IntStream.rangeClosed(1, aMax);
+        if (parallel) as = as.parallel();
+        // los hilos del stream paralelo no reciben la interrupción: se mira la del que llamó
+        Thread caller = Thread.currentThread();
+        return as.allMatch(a -> {
+            if (caller.isInterrupted()) throw new java.util.concurrent.CancellationException("AKS interrumpido");
+            return ring.identityHolds(a);
+        });
+    }
+
+    // ============================
+    // Pasos 1 y 2
+    // ============================
+
+    /** true si n = a^b para algún b >= 2. */
+    static boolean isPerfectPower(BigInteger n) {
+        for (int b = 2; b < n.bitLength(); b++) {
+            BigInteger root = nthRoot(n, b);
+            if (root.pow(b).equals(n)) return true;
+        }
+        return false;
+    }
+
+    /** floor(n^(1/b)) por Newton, partiendo de una cota superior. */
+    static BigInteger nthRoot(BigInteger n, int b) {
+        BigInteger bb = BigInteger.valueOf(b);
+        BigInteger bMinus1 = BigInteger.valueOf(b - 1);
+        BigInteger x = BigInteger.ONE.shiftLeft(n.bitLength() / b + 1); // x >= raíz
+        while (true) {
+            BigInteger next = bMinus1.multiply(x).add(n.divide(x.pow(b - 1))).divide(bb);
+            if (next.compareTo(x) >= 0) return x;
+            x = next;
+        }
+    }
+
+    /** log2(n) con precisión de double. */
+    static double log2(BigInteger n) {
+        int shift = Math.max(0, n.bitLength() - 53);
+        return shift + Math.log(n.shiftRight(shift).doubleValue()) / Math.log(2);
+    }
+
+    /** El menor r con gcd(r, n) = 1 y orden de n módulo r mayor que maxOrder. */
+    static int smallestR(BigInteger n, int maxOrder) {
+        for (int r = 2; ; r++) {
+            long nr = n.mod(BigInteger.valueOf(r)).longValue();
+            if (gcd(nr, r) != 1) continue;
+            long x = 1;
+            int k = 1;
+            for (; k <= maxOrder; k++) {
+                x = x * nr % r;
+                if (x == 1) break;
+            }
+            if (k > maxOrder) return r;
+        }
+    }
+
+    static int phi(int r) {
+        int result = r;
+        int m = r;
+        for (int p = 2; p * p <= m; p++) {
+            if (m % p == 0) {
+                while (m % p == 0) m /= p;
+                result -= result / p;
+            }
+        }
+        if (m > 1) result -= result / m;
+        return result;
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    // ============================
+    // Anillo Z_n[X] / (X^r - 1)
+    // ============================
+
+    /** Comprobación del paso 5 para un a, con la representación de coeficientes adecuada. */
+    private interface Ring {
+        boolean identityHolds(int a);
+    }
+
+    /** Bytes por ranura de Kronecker: caben r · (n-1)^2 (suma de r productos de coeficientes). */
+    private static int slotBytes(int nBits, int r) {
+        int rBits = 32 - Integer.numberOfLeadingZeros(r);
+        return (2 * nBits + rBits + 7) / 8;
+    }
+
+    /** Coeficientes long (n < 2^31): los productos de dos coeficientes caben en un long. */
+    private static final class LongRing implements Ring {
+        private final long n;
+        private final int r;
+        private final int slot;
+        /** 2^64 mod n, para reducir ranuras de hasta 128 bits. */
+        private final long twoTo64;
+
+        LongRing(long n, int r) {
+            this.n = n;
+            this.r = r;
+            this.slot = slotBytes(64 - Long.numberOfLeadingZeros(n), r);
+            this.twoTo64 = (Long.remainderUnsigned(-1L, n) + 1) % n;
+        }
+
+        @Override
+        public boolean identityHolds(int a) {
+            long aModN = a % n;
+            long[] p = new long[r];
+            p[0] = aModN;
+            p[1] = 1;
+            for (int bit = 62 - Long.numberOfLeadingZeros(n); bit >= 0; bit--) {
+                p = square(p);
+                if ((n >>> bit & 1) != 0) p = timesXPlusA(p, aModN);
+            }
+            // X^n + a  =  X^(n mod r) + a
+            int e = (int) (n % r);
+            for (int i = 0; i < r; i++) {
+                long expected = (i == e ? 1 : 0) + (i == 0 ? aModN : 0);
+                if (p[i] != expected % n) return false;
+            }
+            return true;
+        }
+
+        private long[] timesXPlusA(long[] p, long a) {
+            long[] q = new long[r];
+            for (int i = 0; i < r; i++) {
+                q[i] = (p[(i + r - 1) % r] + a * p[i]) % n;
+            }
+            return q;
+        }
+
+        private long[] square(long[] p) {
+            BigInteger packed = pack(p);
+            byte[] product = packed.multiply(packed).toByteArray();
+            long[] q = new long[r];
+            int slots = Math.min(2 * r - 1, (product.length + slot - 1) / slot);
+            for (int i = 0; i < slots; i++) {
+                // ranura i: bytes [end - slot, end) en big-endian
+                int end = product.length - i * slot;
+                int start = Math.max(0, end - slot);
+                long hi = 0;
+                long lo = 0;
+                for (int k = start; k < end; k++) {
+                    hi = hi << 8 | lo >>> 56;
+                    lo = lo << 8 | (product[k] & 0xFF);
+                }
+                long v = ((hi % n) * twoTo64 + Long.remainderUnsigned(lo, n)) % n;
+                int j = i < r ? i : i - r;
+                q[j] = (q[j] + v) % n;
+            }
+            return q;
+        }
+
+        private BigInteger pack(long[] p) {
+            byte[] bytes = new byte[r * slot];
+            for (int i = 0; i < r; i++) {
+                long c = p[i];
+                int end = bytes.length - i * slot;
+                for (int k = 1; k <= 4 && c != 0; k++) {
+                    bytes[end - k] = (byte) c;
+                    c >>>= 8;
+                }
+            }
+            return new BigInteger(1, bytes);
+        }
+    }
+
+    /** Coeficientes BigInteger (n >= 2^31). */
+    private static final class BigRing implements Ring {
+        private final BigInteger n;
+        private final int r;
+        private final int slot;
+
+        BigRing(BigInteger n, int r) {
+            this.n = n;
+            this.r = r;
+            this.slot = slotBytes(n.bitLength(), r);
+        }
+
+        @Override
+        public boolean identityHolds(int a) {
+            BigInteger aModN = BigInteger.valueOf(a).mod(n);
+            BigInteger[] p = new BigInteger[r];
+            Arrays.fill(p, BigInteger.ZERO);
+            p[0] = aModN;
+            p[1] = BigInteger.ONE;
+            for (int bit = n.bitLength() - 2; bit >= 0; bit--) {
+                p = square(p);
+                if (n.testBit(bit)) p = timesXPlusA(p, aModN);
+            }
+            int e = n.mod(BigInteger.valueOf(r)).intValue();
+            for (int i = 0; i < r; i++) {
+                BigInteger expected = BigInteger.valueOf((i == e ? 1 : 0)).add(i == 0 ? aModN : BigInteger.ZERO).mod(n);
+                if (!p[i].equals(expected)) return false;
+            }
+            return true;
+        }
+
+        private BigInteger[] timesXPlusA(BigInteger[] p, BigInteger a) {
+            BigInteger[] q = new BigInteger[r];
+            for (int i = 0; i < r; i++) {
+                q[i] = p[(i + r - 1) % r].add(a.multiply(p[i])).mod(n);
+            }
+            return q;
+        }
+
+        private BigInteger[] square(BigInteger[] p) {
+            byte[] bytes = new byte[r * slot];
+            for (int i = 0; i < r; i++) {
+                byte[] c = p[i].toByteArray();
+                int len = Math.min(c.length, slot); // sin el byte de signo
+                System.arraycopy(c, c.length - len, bytes, bytes.length - i * slot - len, len);
+            }
+            BigInteger packed = new BigInteger(1, bytes);
+            byte[] product = packed.multiply(packed).toByteArray();
+            BigInteger[] q = new BigInteger[r];
+            Arrays.fill(q, BigInteger.ZERO);
+            int slots = Math.min(2 * r - 1, (product.length + slot - 1) / slot);
+            for (int i = 0; i < slots; i++) {
+                int end = product.length - i * slot;
+                int start = Math.max(0, end - slot);
+                BigInteger v = new BigInteger(1, product, start, end - start);
+                int j = i < r ? i : i - r;
+                q[j] = q[j].add(v);
+            }
+            for (int j = 0; j < r; j++) q[j] = q[j].mod(n);
+            return q;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+import java.math.BigInteger;
+
+/**
+ * Algorithm.java
+ *
+ * Las pruebas de PrimalityAllTests que aceptan BigInteger, para poder elegirlas
+ * como parámetro (lotes, línea de comandos, comparaciones).
+ * El código corto es el que se usa en la línea de comandos (por ejemplo --alg=mr).
+ */
+public enum Algorithm {
+    FERMAT("fermat", "Fermat", true),
+    MILLER_RABIN("mr", "Miller-Rabin", true),
+    /** rounds se traduce en la cota de error 4^-rounds, para candidatos aleatorios. */
+    MILLER_RABIN_ADAPTIVE("mra", "Miller-Rabin adaptativo", true),
+    SOLOVAY_STRASSEN("ss", "Solovay-Strassen", true),
+    LEHMANN("lehmann", "Lehmann", true),
+    BAILLIE_PSW("bpsw", "Baillie-PSW", false),
+    AKS("aks", "AKS", false),
+    WILSON("wilson", "Wilson", false);
+
+    private final String code;
+    private final String displayName;
+    private final boolean probabilistic;
+
+    Algorithm(String code, String displayName, boolean probabilistic) {
+        this.code = code;
+        this.displayName = displayName;
+        this.probabilistic = probabilistic;
+    }
+
+    public String code() {
+        return code;
+    }
+
+    public String displayName() {
+        return displayName;
+    }
+
+    /** true si el resultado "primo" depende de la cantidad de rondas aleatorias. */
+    public boolean isProbabilistic() {
+        return probabilistic;
+    }
+
+    /** Ejecuta la prueba; rounds solo se usa en las pruebas probabilísticas. */
+    public boolean test(BigInteger n, int rounds) {
+        switch (this) {
+            case FERMAT: return PrimalityAllTests.fermat(n, rounds);
+            case MILLER_RABIN: return PrimalityAllTests.millerRabin(n, rounds);
+            case MILLER_RABIN_ADAPTIVE: return PrimalityAllTests.millerRabinAdaptive(n, 2 * rounds);
+            case SOLOVAY_STRASSEN: return PrimalityAllTests.solovayStrassen(n, rounds);
+            case LEHMANN: return PrimalityAllTests.lehmann(n, rounds);
+            case BAILLIE_PSW: return PrimalityAllTests.bailliePSW(n);
+            case AKS: return PrimalityAllTests.aks(n);
+            case WILSON: return PrimalityAllTests.wilson(n);
+            default: throw new AssertionError(this);
+        }
+    }
+
+    /** Nivel de confianza de un resultado exacto (ver confidenceBits). */
+    public static final int EXACT = Integer.MAX_VALUE;
+
+    /**
+     * Confianza de un resultado "primo" de esta prueba para n con rounds rondas, en bits:
+     * la probabilidad de error es a lo sumo 2^-bits (EXACT si es determinístico).
+     * - Miller-Rabin: 4^-rounds; Solovay-Strassen: 2^-rounds.
+     * - Miller-Rabin adaptativo: 4^-rounds para candidatos aleatorios (cota DLP), con muchas
+     *   menos rondas; exacto hasta 81 bits (bases determinísticas).
+     * - Fermat y Lehmann: rounds bits nominales, sin cota real. Los números de Carmichael pasan
+     *   Fermat; Lehmann solo pide a^((n-1)/2) = ±1 y la pasan los de Carmichael con
+     *   λ(n) | (n-1)/2 (p. ej. 1296198694153288947529), sea cual sea la cantidad de rondas.
+     * - Miller-Rabin y Baillie-PSW son exactos para n < 2^63 (LongPrimality); AKS siempre.
+     * - Baillie-PSW sin contraejemplos conocidos: se toma 64.
+     * Un resultado "compuesto" siempre es exacto.
+     */
+    public int confidenceBits(BigInteger n, int rounds) {
+        boolean small = n.bitLength() <= 63;
+        switch (this) {
+            case FERMAT: return rounds;
+            case MILLER_RABIN: return small ? EXACT : 2 * rounds;
+            case MILLER_RABIN_ADAPTIVE: return n.bitLength() <= 81 ? EXACT : 2 * rounds;
+            case SOLOVAY_STRASSEN: return rounds;
+            case LEHMANN: return rounds; // nominal, como Fermat
+            case BAILLIE_PSW: return small ? EXACT : 64;
+            case AKS: return EXACT;
+            case WILSON: return EXACT;
+            default: throw new AssertionError(this);
+        }
+    }
+
+    /** Busca por código corto ("mr") o por nombre de la constante ("MILLER_RABIN"). */
+    public static Algorithm fromCode(String code) {
+        for (Algorithm a : values()) {
+            if (a.code.equalsIgnoreCase(code) || a.name().equalsIgnoreCase(code)) return a;
+        }
+        throw new IllegalArgumentException("Algoritmo desconocido: " + code);
+    }
+}
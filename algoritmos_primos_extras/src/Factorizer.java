@@ -0,0 +1,464 @@
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Factorizer.java
+ *
+ * Factorización completa, para que un "compuesto" venga con un factor testigo:
+ * - Primero los primos de la tabla de SmallPrimeFilter (mismo filtro que las pruebas;
+ *   para BigInteger con la reducción por grupos de productos < 2^31).
+ * - Cada cofactor se prueba con PrimalityAllTests.millerRabin (determinístico si cabe en
+ *   63 bits; con ROUNDS rondas si no) y se descartan potencias perfectas m^k.
+ * - Cofactores < 2^63: rho de Pollard con la variante de Brent en long, con la aritmética
+ *   de Montgomery de LongPrimality; las diferencias |x - y| se multiplican en lotes de
+ *   BATCH y se hace un solo gcd por lote (si el gcd da n, se repite el lote paso a paso).
+ * - Cofactores mayores: ECM de Lenstra con curvas de Montgomery By^2 = x^3 + Ax^2 + x en
+ *   coordenadas (X:Z) (parametrización de Suyama), etapa 1 hasta B1 y etapa 2 con paso de
+ *   bebé / paso de gigante hasta B2 = 100·B1. Las curvas son independientes: se reparten
+ *   entre los hilos de un ForkJoinPool y la primera que encuentra un factor detiene al resto.
+ *   B1 y la cantidad de curvas suben por etapas (tabla de GMP-ECM por dígitos del factor).
+ * Los factores de más de 63 bits son primos probables (Miller-Rabin). Un n sin factores
+ * pequeños ni medianos (p. ej. producto de dos primos de 40 dígitos) puede tardar horas:
+ * ECM encuentra factores de hasta unos 25-30 dígitos en tiempos razonables.
+ *
+ * Uso: java -cp bin Factorizer 18446744073709551617 [hilos]
+ */
+public final class Factorizer {
+
+    /** Rondas de Miller-Rabin para los cofactores de más de 63 bits. */
+    static final int ROUNDS = 25;
+    /** Diferencias por gcd en el rho de Brent. */
+    private static final int BATCH = 128;
+    private static final BigInteger LONG_LIMIT = BigInteger.ONE.shiftLeft(63);
+
+    /** Etapas de ECM: B1 y cantidad de curvas (factores de ~15, 20, 25, 30, 35, 40 dígitos). */
+    private static final long[] ECM_B1 = {2_000, 11_000, 50_000, 250_000, 1_000_000, 3_000_000};
+    private static final int[] ECM_CURVES = {25, 90, 300, 700, 1800, 5100};
+
+    private Factorizer() {
+    }
+
+    /** Factorización: primos (en orden creciente) con su exponente. */
+    public static final class Factorization {
+        private final BigInteger n;
+        private final TreeMap<BigInteger, Integer> factors;
+
+        Factorization(BigInteger n, TreeMap<BigInteger, Integer> factors) {
+            this.n = n;
+            this.factors = factors;
+        }
+
+        public BigInteger number() {
+            return n;
+        }
+
+        /** Primo -> exponente, en orden creciente (vacío para n = 1). */
+        public Map<BigInteger, Integer> factors() {
+            return Collections.unmodifiableMap(factors);
+        }
+
+        public boolean isPrime() {
+            return factors.size() == 1 && factors.firstEntry().getValue() == 1;
+        }
+
+        /** Menor factor primo (null para n = 1). */
+        public BigInteger smallestFactor() {
+            return factors.isEmpty() ? null : factors.firstKey();
+        }
+
+        /** "2^3 · 3 · 167". */
+        @Override
+        public String toString() {
+            if (factors.isEmpty()) return "1";
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<BigInteger, Integer> e : factors.entrySet()) {
+                if (sb.length() > 0) sb.append(" · ");
+                sb.append(e.getKey());
+                if (e.getValue() > 1) sb.append('^').append(e.getValue());
+            }
+            return sb.toString();
+        }
+    }
+
+    // ============================
+    // API
+    // ============================
+
+    /** Factorización completa de n >= 1 con todos los núcleos disponibles. */
+    public static Factorization factor(BigInteger n) {
+        return factor(n, Runtime.getRuntime().availableProcessors());
+    }
+
+    /** Factorización completa de n >= 1; parallelism hilos para las curvas de ECM. */
+    public static Factorization factor(BigInteger n, int parallelism) {
+        if (n.signum() <= 0) throw new IllegalArgumentException("n debe ser >= 1: " + n);
+        if (parallelism < 1) throw new IllegalArgumentException("parallelism debe ser >= 1");
+        TreeMap<BigInteger, Integer> factors = new TreeMap<>();
+        BigInteger rest = trialDivide(n, factors);
+        Deque<BigInteger> pending = new ArrayDeque<>();
+        if (!rest.equals(BigInteger.ONE)) pending.push(rest);
+        ForkJoinPool pool = null;
+        try {
+            while (!pending.isEmpty()) {
+                BigInteger m = pending.pop();
+                if (PrimalityAllTests.millerRabin(m, ROUNDS)) {
+                    factors.merge(m, 1, Integer::sum);
+                    continue;
+                }
+                BigInteger d = perfectPowerRoot(m);
+                if (d == null) {
+                    if (m.compareTo(LONG_LIMIT) < 0) {
+                        d = BigInteger.valueOf(brentRho(m.longValue()));
+                    } else {
+                        if (pool == null) pool = new ForkJoinPool(parallelism);
+                        d = ecm(m, pool, parallelism);
+                    }
+                }
+                // d es un factor no trivial: cada parte se sigue factorizando
+                pending.push(d);
+                pending.push(m.divide(d));
+            }
+        } finally {
+            if (pool != null) pool.shutdown();
+        }
+        return new Factorization(n, factors);
+    }
+
+    public static Factorization factor(long n) {
+        return factor(BigInteger.valueOf(n), 1);
+    }
+
+    /** Menor factor primo de n si es compuesto; null si n es primo o 1. */
+    public static BigInteger witness(BigInteger n) {
+        if (n.signum() <= 0) throw new IllegalArgumentException("n debe ser >= 1: " + n);
+        if (n.equals(BigInteger.ONE) || PrimalityAllTests.millerRabin(n, ROUNDS)) return null;
+        int p = SmallPrimeFilter.shared().smallestFactor(n);
+        if (p != 0) return BigInteger.valueOf(p);
+        return factor(n).smallestFactor();
+    }
+
+    /** Divide n por los primos de la tabla de SmallPrimeFilter; devuelve el cofactor. */
+    private static BigInteger trialDivide(BigInteger n, TreeMap<BigInteger, Integer> factors) {
+        SmallPrimeFilter filter = SmallPrimeFilter.shared();
+        while (n.compareTo(BigInteger.ONE) > 0) {
+            int p = filter.smallestFactor(n);
+            if (p == 0) break;
+            BigInteger bp = BigInteger.valueOf(p);
+            int e = 0;
+            BigInteger[] qr = n.divideAndRemainder(bp);
+            while (qr[1].signum() == 0) {
+                n = qr[0];
+                e++;
+                qr = n.divideAndRemainder(bp);
+            }
+            factors.put(bp, e);
+        }
+        return n;
+    }
+
+    /** Si n = m^k con k >= 2, devuelve m; si no, null (n sin factores de la tabla). */
+    static BigInteger perfectPowerRoot(BigInteger n) {
+        // m > mayor primo de la tabla >= 2^t, así que m^k = n implica k < bits / t
+        int t = 63 - Long.numberOfLeadingZeros(SmallPrimeFilter.shared().largestPrime());
+        int maxK = Math.max(2, n.bitLength() / Math.max(1, t));
+        for (int k = 2; k <= maxK; k++) {
+            if (!LongPrimality.isPrime(k)) continue; // m^(ab) = (m^a)^b: basta probar k primo
+            BigInteger r = iroot(n, k);
+            if (r.pow(k).equals(n)) return r;
+        }
+        return null;
+    }
+
+    /** ⌊n^(1/k)⌋ por Newton, para n >= 1 y k >= 2. */
+    static BigInteger iroot(BigInteger n, int k) {
+        BigInteger kb = BigInteger.valueOf(k);
+        BigInteger km1 = BigInteger.valueOf(k - 1);
+        // cota inicial por encima de la raíz: 2^(⌈bits/k⌉)
+        BigInteger x = BigInteger.ONE.shiftLeft((n.bitLength() + k - 1) / k);
+        while (true) {
+            BigInteger y = km1.multiply(x).add(n.divide(x.pow(k - 1))).divide(kb);
+            if (y.compareTo(x) >= 0) return x;
+            x = y;
+        }
+    }
+
+    // ============================
+    // Rho de Brent en long
+    // ============================
+
+    /** Un factor no trivial de n compuesto, impar, < 2^63 y sin ser potencia perfecta. */
+    static long brentRho(long n) {
+        long nInv = LongPrimality.inverse(n);
+        long one = LongPrimality.oneMont(n);
+        SplittableRandom rnd = new SplittableRandom(n);
+        while (true) {
+            // f(x) = x^2 + c en forma de Montgomery; c != 0, -2
+            long c = 1 + rnd.nextLong(n - 3);
+            long y = rnd.nextLong(n);
+            long g = rhoRun(n, nInv, one, c, y);
+            if (g != n) return g;
+        }
+    }
+
+    /** Una corrida de Brent; devuelve un divisor > 1 de n (n si falló con este c). */
+    private static long rhoRun(long n, long nInv, long one, long c, long y) {
+        long x = y;
+        long ys = y;
+        long q = one;
+        long g = 1;
+        for (long r = 1; g == 1; r <<= 1) {
+            x = y;
+            for (long i = 0; i < r; i++) y = step(y, c, n, nInv);
+            for (long k = 0; k < r && g == 1; k += BATCH) {
+                ys = y;
+                long steps = Math.min(BATCH, r - k);
+                for (long i = 0; i < steps; i++) {
+                    y = step(y, c, n, nInv);
+                    q = LongPrimality.mulMont(q, x > y ? x - y : y - x, n, nInv);
+                }
+                // q está en forma de Montgomery (q·R^-1 por paso): gcd con n es el mismo
+                g = gcd(q, n);
+            }
+        }
+        if (g == n) {
+            // el lote juntó todos los factores (o llegó a 0): se repite paso a paso
+            do {
+                ys = step(ys, c, n, nInv);
+                g = gcd(x > ys ? x - ys : ys - x, n);
+            } while (g == 1);
+        }
+        return g;
+    }
+
+    private static long step(long y, long c, long n, long nInv) {
+        long s = LongPrimality.mulMont(y, y, n, nInv) + c;
+        return s >= n || s < 0 ? s - n : s;
+    }
+
+    /** gcd binario para a, b >= 0. */
+    static long gcd(long a, long b) {
+        if (a == 0) return b;
+        if (b == 0) return a;
+        int shift = Long.numberOfTrailingZeros(a | b);
+        a >>>= Long.numberOfTrailingZeros(a);
+        while (b != 0) {
+            b >>>= Long.numberOfTrailingZeros(b);
+            if (a > b) {
+                long t = a;
+                a = b;
+                b = t;
+            }
+            b -= a;
+        }
+        return a << shift;
+    }
+
+    // ============================
+    // ECM con curvas de Montgomery
+    // ============================
+
+    /** Un factor no trivial de n compuesto, sin factores pequeños y sin ser potencia perfecta. */
+    static BigInteger ecm(BigInteger n, ForkJoinPool pool, int parallelism) {
+        Random seeds = new Random(n.hashCode());
+        for (int stage = 0; ; stage = Math.min(stage + 1, ECM_B1.length - 1)) {
+            long b1 = ECM_B1[stage];
+            int[] stage1Primes = primesUpTo(b1);
+            AtomicReference<BigInteger> found = new AtomicReference<>();
+            List<Future<?>> futures = new ArrayList<>();
+            int curves = ECM_CURVES[stage];
+            // cada tarea corre varias curvas seguidas (unas 4 tareas por hilo)
+            int perTask = Math.max(1, curves / (4 * parallelism));
+            for (int done = 0; done < curves; done += perTask) {
+                long seed = seeds.nextLong();
+                int count = Math.min(perTask, curves - done);
+                futures.add(pool.submit(() -> {
+                    Random rnd = new Random(seed);
+                    for (int i = 0; i < count && found.get() == null; i++) {
+                        BigInteger d = new Curve(n, rnd, found).run(b1, 100 * b1, stage1Primes);
+                        if (d != null) found.compareAndSet(null, d);
+                    }
+                }));
+            }
+            try {
+                for (Future<?> f : futures) {
+                    f.get();
+                    if (found.get() != null) break;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Factorización interrumpida", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Error en una curva de ECM", e.getCause());
+            } finally {
+                for (Future<?> f : futures) f.cancel(false);
+            }
+            if (found.get() != null) return found.get();
+        }
+    }
+
+    private static int[] primesUpTo(long limit) {
+        return SegmentedSieve.primes(2, limit).mapToInt(p -> (int) p).toArray();
+    }
+
+    /** Punto (X:Z) de una curva de Montgomery. */
+    private static final class Point {
+        final BigInteger x;
+        final BigInteger z;
+
+        Point(BigInteger x, BigInteger z) {
+            this.x = x;
+            this.z = z;
+        }
+    }
+
+    /** Una curva aleatoria módulo n con a24 = (A + 2) / 4. */
+    private static final class Curve {
+        private static final int D = 2310; // 2·3·5·7·11: pasos de gigante
+        /** Pasos de gigante por gcd en la etapa 2 (potencia de 2). */
+        private static final int GCD_STEPS = 16;
+        private final BigInteger n;
+        private final AtomicReference<BigInteger> found;
+        private BigInteger a24;
+        private Point start;
+        /** Factor hallado al construir la curva (inverso inexistente). */
+        private BigInteger early;
+
+        /** Parametrización de Suyama con σ aleatorio en [6, n - 1). */
+        Curve(BigInteger n, Random rnd, AtomicReference<BigInteger> found) {
+            this.n = n;
+            this.found = found;
+            BigInteger sigma;
+            do {
+                sigma = new BigInteger(n.bitLength(), rnd).mod(n);
+            } while (sigma.compareTo(BigInteger.valueOf(6)) < 0);
+            BigInteger u = sigma.multiply(sigma).subtract(BigInteger.valueOf(5)).mod(n);
+            BigInteger v = sigma.shiftLeft(2).mod(n);
+            BigInteger u3 = u.pow(3).mod(n);
+            BigInteger vMinusU = v.subtract(u);
+            BigInteger num = vMinusU.pow(3).multiply(u.multiply(BigInteger.valueOf(3)).add(v)).mod(n);
+            BigInteger den = u3.multiply(v).shiftLeft(4).mod(n);
+            BigInteger g = den.gcd(n);
+            if (!g.equals(BigInteger.ONE)) {
+                if (!g.equals(n)) early = g;
+                return;
+            }
+            this.a24 = num.multiply(den.modInverse(n)).mod(n);
+            this.start = new Point(u3, v.pow(3).mod(n));
+        }
+
+        /** Etapas 1 y 2; devuelve un factor no trivial o null. */
+        BigInteger run(long b1, long b2, int[] stage1Primes) {
+            if (early != null) return early;
+            if (a24 == null) return null; // σ degenerado (gcd = n)
+            Point q = start;
+            for (int p : stage1Primes) {
+                long pk = p;
+                while (pk <= b1 / p) pk *= p;
+                q = multiply(q, pk);
+                if (found.get() != null) return null;
+            }
+            BigInteger g = q.z.gcd(n);
+            if (!g.equals(BigInteger.ONE)) return g.equals(n) ? null : g;
+            return stage2(q, b1, b2);
+        }
+
+        /**
+         * Paso de bebé / paso de gigante: para cada primo b1 < p <= b2, p = kD ± j con j < D/2
+         * coprimo con D; [kD]Q = ±[j]Q (mod q) si q | X_kD·Z_j - X_j·Z_kD. Se acumula el
+         * producto y se hace un gcd cada GCD_STEPS pasos de gigante.
+         */
+        private BigInteger stage2(Point q, long b1, long b2) {
+            // pasos de bebé: [j]Q para j impar < D/2 (se usan los coprimos con D)
+            Point[] baby = new Point[D / 2];
+            Point q2 = dbl(q);
+            baby[1] = q;
+            baby[3] = add(q2, q, q);
+            for (int j = 5; j < D / 2; j += 2) baby[j] = add(baby[j - 2], q2, baby[j - 4]);
+            Point stepD = multiply(q, D);
+
+            long k = (b1 + D / 2) / D;
+            Point prev = k <= 1 ? null : multiply(q, (k - 1) * D);
+            Point giant = multiply(q, k * D);
+            BigInteger acc = BigInteger.ONE;
+            PrimitiveIterator.OfLong primes = SegmentedSieve.primes(b1 + 1, b2).iterator();
+            while (primes.hasNext()) {
+                long p = primes.nextLong();
+                while (p > k * D + D / 2) {
+                    // siguiente paso de gigante: [(k+1)D]Q = [kD]Q + [D]Q, diferencia [(k-1)D]Q
+                    Point following = prev == null ? dbl(giant) : add(giant, stepD, prev);
+                    prev = giant;
+                    giant = following;
+                    k++;
+                    if ((k & (GCD_STEPS - 1)) == 0) {
+                        if (found.get() != null) return null;
+                        BigInteger g = acc.gcd(n);
+                        if (!g.equals(BigInteger.ONE)) return g.equals(n) ? null : g;
+                    }
+                }
+                Point b = baby[(int) Math.abs(p - k * D)];
+                acc = acc.multiply(giant.x.multiply(b.z).subtract(b.x.multiply(giant.z))).mod(n);
+            }
+            BigInteger g = acc.gcd(n);
+            return g.equals(BigInteger.ONE) || g.equals(n) ? null : g;
+        }
+
+        /** [k]P con la escalera de Montgomery (k >= 1). */
+        private Point multiply(Point p, long k) {
+            if (k == 1) return p;
+            Point r0 = p;
+            Point r1 = dbl(p);
+            for (int bit = 62 - Long.numberOfLeadingZeros(k); bit >= 0; bit--) {
+                if (((k >>> bit) & 1) != 0) {
+                    r0 = add(r1, r0, p);
+                    r1 = dbl(r1);
+                } else {
+                    r1 = add(r0, r1, p);
+                    r0 = dbl(r0);
+                }
+            }
+            return r0;
+        }
+
+        private Point dbl(Point p) {
+            BigInteger s = p.x.add(p.z);
+            BigInteger d = p.x.subtract(p.z);
+            BigInteger t1 = s.multiply(s).mod(n);
+            BigInteger t2 = d.multiply(d).mod(n);
+            BigInteger t3 = t1.subtract(t2);
+            return new Point(t1.multiply(t2).mod(n), t3.multiply(t2.add(a24.multiply(t3))).mod(n));
+        }
+
+        /** P + Q conociendo diff = P - Q. */
+        private Point add(Point p, Point q, Point diff) {
+            BigInteger u = p.x.subtract(p.z).multiply(q.x.add(q.z));
+            BigInteger v = p.x.add(p.z).multiply(q.x.subtract(q.z));
+            BigInteger s = u.add(v).mod(n);
+            BigInteger d = u.subtract(v).mod(n);
+            return new Point(diff.z.multiply(s.multiply(s)).mod(n), diff.x.multiply(d.multiply(d)).mod(n));
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Uso: Factorizer n [hilos]");
+            System.exit(2);
+        }
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        long t0 = System.nanoTime();
+        Factorization f = factor(new BigInteger(args[0]), threads);
+        System.out.printf("%s = %s (%.1f ms)%n", args[0], f, (System.nanoTime() - t0) / 1e6);
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * LongPrimality.java
+ *
+ * Miller-Rabin determinístico para enteros que caben en un long (n < 2^63).
+ * - Usa las bases fijas 2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, que
+ *   no tienen pseudoprimos fuertes comunes por debajo de 3.18 · 10^23 (en
+ *   particular, para todo n < 2^64); por lo tanto el resultado es una
+ *   demostración, no un "probablemente primo".
+ * - La aritmética modular se hace en forma de Montgomery (R = 2^64) usando
+ *   Math.multiplyHigh, así que no se crea ningún objeto por llamada.
+ *
+ * PrimalityAllTests delega aquí cuando n.bitLength() <= 63.
+ */
+public final class LongPrimality {
+
+    /** Bases que hacen a Miller-Rabin determinístico para todo n < 2^64. */
+    private static final long[] BASES = {2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37};
+
+    private LongPrimality() {
+    }
+
+    /**
+     * Prueba determinística de primalidad para n de 64 bits con signo.
+     * Los negativos, 0 y 1 no son primos.
+     */
+    public static boolean isPrime(long n) {
+        if (n < 2) return false;
+        // Divisiones baratas por primos pequeños antes de entrar a Montgomery
+        for (long p : BASES) {
+            if (n == p) return true;
+            if (n % p == 0) return false;
+        }
+        if (n < 41 * 41) return true; // sin factor <= 37 y n < 41^2
+        return strongProbablePrime(n, BASES);
+    }
+
+    /**
+     * Prueba fuerte de probable primo (Miller-Rabin) para n impar > 1 con
+     * las bases dadas. Las bases múltiplo de n se ignoran.
+     */
+    static boolean strongProbablePrime(long n, long[] bases) {
+        return firstWitness(n, bases) < 0;
+    }
+
+    /**
+     * Índice de la primera base que demuestra que n (impar > 1) es compuesto, o -1 si n
+     * pasa todas; se detiene en el primer testigo.
+     */
+    static int firstWitness(long n, long[] bases) {
+        long nInv = inverse(n);
+        long one = oneMont(n);
+        long r2 = r2Mont(n, one);
+        long minusOne = n - one;
+
+        long nMinus1 = n - 1;
+        int s = Long.numberOfTrailingZeros(nMinus1);
+        long d = nMinus1 >>> s;
+
+        for (int i = 0; i < bases.length; i++) {
+            long aRed = bases[i] % n;
+            if (aRed == 0) continue;
+            long x = powMont(toMont(aRed, r2, n, nInv), d, one, n, nInv);
+            if (x == one || x == minusOne) continue;
+            boolean composite = true;
+            for (int r = 1; r < s; r++) {
+                x = mulMont(x, x, n, nInv);
+                if (x == minusOne) {
+                    composite = false;
+                    break;
+                }
+            }
+            if (composite) return i;
+        }
+        return -1;
+    }
+
+    // ============================
+    // Aritmética de Montgomery (R = 2^64, n impar, 0 < n < 2^63)
+    // ============================
+
+    /** n^-1 mod 2^64 por iteración de Newton (cada paso duplica los bits correctos). */
+    static long inverse(long n) {
+        long inv = n; // correcto en 3 bits porque n*n ≡ 1 (mod 8) para n impar
+        for (int i = 0; i < 5; i++) {
+            inv *= 2 - n * inv;
+        }
+        return inv;
+    }
+
+    /** R mod n, es decir, el 1 en forma de Montgomery. */
+    static long oneMont(long n) {
+        return Long.remainderUnsigned(-n, n); // (2^64 - n) mod n == 2^64 mod n
+    }
+
+    /** R^2 mod n, obtenido duplicando R mod n sesenta y cuatro veces. */
+    static long r2Mont(long n, long one) {
+        long x = one;
+        for (int i = 0; i < 64; i++) {
+            x <<= 1; // x < n < 2^63, así que 2x cabe como unsigned
+            if (Long.compareUnsigned(x, n) >= 0) x -= n;
+        }
+        return x;
+    }
+
+    /** Convierte a (0 <= a < n) a forma de Montgomery. */
+    static long toMont(long a, long r2, long n, long nInv) {
+        return mulMont(a, r2, n, nInv);
+    }
+
+    /** Convierte de forma de Montgomery a representación normal. */
+    static long fromMont(long a, long n, long nInv) {
+        return reduce(0, a, n, nInv);
+    }
+
+    /** a * b * R^-1 mod n para 0 <= a, b < n. */
+    static long mulMont(long a, long b, long n, long nInv) {
+        return reduce(Math.multiplyHigh(a, b), a * b, n, nInv);
+    }
+
+    /** REDC: (hi·2^64 + lo) · R^-1 mod n, con hi < n. */
+    private static long reduce(long hi, long lo, long n, long nInv) {
+        long m = lo * nInv;
+        // parte alta (sin signo) de m*n; n es positivo así que basta corregir por el signo de m
+        long mnHi = Math.multiplyHigh(m, n) + ((m >> 63) & n);
+        long t = hi - mnHi; // las partes bajas se cancelan exactamente
+        return t < 0 ? t + n : t;
+    }
+
+    /** base^e en forma de Montgomery (exponenciación binaria de izquierda a derecha). */
+    static long powMont(long base, long e, long one, long n, long nInv) {
+        long result = one;
+        for (int bit = 63 - Long.numberOfLeadingZeros(e); bit >= 0; bit--) {
+            result = mulMont(result, result, n, nInv);
+            if (((e >>> bit) & 1) != 0) {
+                result = mulMont(result, base, n, nInv);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,174 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * LucasLehmer.java
+ *
+ * Prueba de Lucas-Lehmer para números de Mersenne M_p = 2^p - 1:
+ *   s_0 = 4, s_{i+1} = s_i^2 - 2 (mod M_p); M_p es primo si y solo si s_{p-2} = 0.
+ * - Si p no es primo, M_p es compuesto (no se ejecuta la prueba).
+ * - Antes se buscan factores de la forma q = 2kp + 1 con q ≡ ±1 (mod 8) (los únicos
+ *   posibles divisores de M_p), comprobando 2^p ≡ 1 (mod q) en aritmética long.
+ * - La reducción módulo M_p no divide: como 2^p ≡ 1, x = (x mod 2^p) + (x >> p),
+ *   es decir una máscara, un desplazamiento y una suma (dos veces a lo sumo).
+ * - s.multiply(s) usa el algoritmo de cuadrado de BigInteger (Karatsuba/Toom-Cook).
+ * - Con un archivo de checkpoint se guarda el residuo cada cierto número de iteraciones
+ *   (escritura atómica) y una ejecución interrumpida continúa desde ahí.
+ *
+ * Uso: LucasLehmer.isMersennePrime(127) o isMersennePrime(86243, Paths.get("ll.ckpt"), 5000)
+ */
+public final class LucasLehmer {
+
+    /** Iteraciones entre checkpoints por defecto. */
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 10_000;
+
+    /** Mayor divisor q probado en la factorización por tentativa (q^2 cabe en 64 bits sin signo). */
+    static final long MAX_TRIAL_FACTOR = 0xFFFF_FFFFL;
+
+    private static final int CHECKPOINT_MAGIC = 0x4C4C434B; // "LLCK"
+    private static final BigInteger TWO = BigInteger.valueOf(2);
+
+    private LucasLehmer() {
+    }
+
+    /** true si 2^p - 1 es primo. */
+    public static boolean isMersennePrime(int p) {
+        try {
+            return isMersennePrime(p, null, DEFAULT_CHECKPOINT_INTERVAL);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // sin checkpoint no hay E/S
+        }
+    }
+
+    /**
+     * true si 2^p - 1 es primo. Si checkpoint no es null, el residuo se guarda allí cada
+     * interval iteraciones y, si el archivo ya existe (de una ejecución anterior con el
+     * mismo p), se continúa desde él. Al terminar el archivo se borra.
+     */
+    public static boolean isMersennePrime(int p, Path checkpoint, int interval) throws IOException {
+        if (p < 2) return false;
+        if (p == 2) return true; // 3 es primo (2^2-1 = 3)
+        if (!LongPrimality.isPrime(p)) return false; // p = ab => 2^a - 1 divide a 2^p - 1
+        if (interval < 1) throw new IllegalArgumentException("interval debe ser >= 1");
+
+        Checkpoint start = checkpoint != null ? Checkpoint.read(checkpoint, p) : null;
+        if (start == null && trialFactor(p, trialLimit(p)) != 0) return false;
+
+        BigInteger m = BigInteger.ONE.shiftLeft(p).subtract(BigInteger.ONE);
+        BigInteger s = start != null ? start.residue : BigInteger.valueOf(4);
+        int first = start != null ? start.iteration : 0;
+        for (int i = first; i < p - 2; i++) {
+            if (checkpoint != null && i > first && (i - first) % interval == 0) {
+                Checkpoint.write(checkpoint, p, i, s);
+            }
+            s = reduce(s.multiply(s).subtract(TWO), m, p);
+        }
+        if (checkpoint != null) Files.deleteIfExists(checkpoint);
+        return s.signum() == 0;
+    }
+
+    /** x mod (2^p - 1) para -2 <= x < 2^(2p), sin división. */
+    static BigInteger reduce(BigInteger x, BigInteger m, int p) {
+        if (x.signum() < 0) return x.add(m);
+        while (x.bitLength() > p) {
+            x = x.and(m).add(x.shiftRight(p));
+        }
+        return x.equals(m) ? BigInteger.ZERO : x;
+    }
+
+    // ============================
+    // Factorización por tentativa
+    // ============================
+
+    /**
+     * Límite de q según p: la búsqueda cuesta como mucho unas pocas veces lo que 16·p
+     * exponenciaciones long, muy por debajo de las p elevaciones al cuadrado de p bits.
+     */
+    static long trialLimit(int p) {
+        return Math.min(MAX_TRIAL_FACTOR, 2L * p * 16L * p + 1);
+    }
+
+    /** El menor factor q = 2kp + 1 <= maxQ de 2^p - 1 (p primo impar), o 0 si no hay. */
+    public static long trialFactor(int p, long maxQ) {
+        maxQ = Math.min(maxQ, MAX_TRIAL_FACTOR);
+        // basta llegar a sqrt(2^p - 1); además así q nunca es el propio M_p
+        if (p < 64) maxQ = Math.min(maxQ, 1L << ((p + 1) / 2));
+        long step = 2L * p;
+        for (long q = step + 1; q <= maxQ; q += step) {
+            long r = q & 7;
+            if (r != 1 && r != 7) continue;
+            if (powTwoMod(p, q) == 1) return q; // el menor factor siempre es primo
+        }
+        return 0;
+    }
+
+    /** 2^e mod q para q < 2^32. */
+    private static long powTwoMod(int e, long q) {
+        long result = 1;
+        for (int bit = 31 - Integer.numberOfLeadingZeros(e); bit >= 0; bit--) {
+            result = Long.remainderUnsigned(result * result, q);
+            if ((e >>> bit & 1) != 0) {
+                result <<= 1;
+                if (result >= q) result -= q;
+            }
+        }
+        return result;
+    }
+
+    // ============================
+    // Checkpoint
+    // ============================
+
+    /** Residuo s_i guardado tras i iteraciones. */
+    private static final class Checkpoint {
+        final int iteration;
+        final BigInteger residue;
+
+        Checkpoint(int iteration, BigInteger residue) {
+            this.iteration = iteration;
+            this.residue = residue;
+        }
+
+        /** null si el archivo no existe; IllegalStateException si es de otro p o está dañado. */
+        static Checkpoint read(Path file, int p) throws IOException {
+            if (!Files.exists(file)) return null;
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+                if (in.readInt() != CHECKPOINT_MAGIC) {
+                    throw new IllegalStateException("No es un checkpoint de Lucas-Lehmer: " + file);
+                }
+                int savedP = in.readInt();
+                if (savedP != p) {
+                    throw new IllegalStateException("El checkpoint " + file + " es de p = " + savedP + ", no de p = " + p);
+                }
+                int iteration = in.readInt();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                BigInteger residue = new BigInteger(1, bytes);
+                if (iteration < 0 || iteration > p - 2 || residue.bitLength() > p) {
+                    throw new IllegalStateException("Checkpoint dañado: " + file);
+                }
+                return new Checkpoint(iteration, residue);
+            }
+        }
+
+        /** Escribe en un temporal y lo renombra, así un corte nunca deja el archivo a medias. */
+        static void write(Path file, int p, int iteration, BigInteger residue) throws IOException {
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            byte[] bytes = residue.toByteArray();
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(tmp))) {
+                out.writeInt(CHECKPOINT_MAGIC);
+                out.writeInt(p);
+                out.writeInt(iteration);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+}
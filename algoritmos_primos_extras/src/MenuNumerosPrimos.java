@@ -5,6 +5,12 @@ import java.util.Scanner;
 public class PruebasPrimalidad {
 
     public static void main(String[] args) {
+        // con argumentos: modo no interactivo (ver PrimalityCli)
+        if (args.length > 0) {
+            int code = PrimalityCli.run(args);
+            if (code != 0) System.exit(code);
+            return;
+        }
         Scanner sc = new Scanner(System.in);
         Random rand = new Random();
 
@@ -89,7 +95,7 @@ public class PruebasPrimalidad {
             s++;
         }
 
-        Random rand = new Random();
+        Random rand = PrimalityAllTests.witnessSource().random(n);
         for (int i = 0; i < iteraciones; i++) {
             BigInteger a = new BigInteger(n.bitLength() - 1, rand).add(BigInteger.ONE);
             BigInteger x = a.modPow(d, n);
@@ -111,7 +117,7 @@ public class PruebasPrimalidad {
     static boolean fermat(BigInteger n, int iteraciones) {
         if (n.equals(BigInteger.TWO)) return true;
         if (!n.gcd(BigInteger.TWO).equals(BigInteger.ONE)) return false;
-        Random rand = new Random();
+        Random rand = PrimalityAllTests.witnessSource().random(n);
         for (int i = 0; i < iteraciones; i++) {
             BigInteger a = new BigInteger(n.bitLength() - 1, rand).add(BigInteger.ONE);
             if (!a.modPow(n.subtract(BigInteger.ONE), n).equals(BigInteger.ONE)) return false;
@@ -123,7 +129,7 @@ public class PruebasPrimalidad {
     static boolean solovayStrassen(BigInteger n, int iteraciones) {
         if (n.compareTo(BigInteger.TWO) < 0) return false;
         if (n.equals(BigInteger.TWO)) return true;
-        Random rand = new Random();
+        Random rand = PrimalityAllTests.witnessSource().random(n);
         for (int i = 0; i < iteraciones; i++) {
             BigInteger a = new BigInteger(n.bitLength() - 1, rand).add(BigInteger.ONE);
             BigInteger jacobi = BigInteger.valueOf(jacobiSymbol(a, n));
@@ -134,22 +140,7 @@ public class PruebasPrimalidad {
     }
 
     static int jacobiSymbol(BigInteger a, BigInteger n) {
-        if (n.mod(BigInteger.TWO).equals(BigInteger.ZERO)) throw new IllegalArgumentException("n debe ser impar");
-        int result = 1;
-        a = a.mod(n);
-        while (!a.equals(BigInteger.ZERO)) {
-            while (a.mod(BigInteger.TWO).equals(BigInteger.ZERO)) {
-                a = a.divide(BigInteger.TWO);
-                BigInteger r = n.mod(BigInteger.valueOf(8));
-                if (r.equals(BigInteger.valueOf(3)) || r.equals(BigInteger.valueOf(5))) result = -result;
-            }
-            BigInteger temp = a;
-            a = n;
-            n = temp;
-            if (a.mod(BigInteger.valueOf(4)).equals(BigInteger.valueOf(3)) && n.mod(BigInteger.valueOf(4)).equals(BigInteger.valueOf(3))) result = -result;
-            a = a.mod(n);
-        }
-        return n.equals(BigInteger.ONE) ? result : 0;
+        return PrimalityAllTests.jacobi(a, n);
     }
 
     // === 4. Baillie-PSW (simplificado) ===
@@ -158,23 +149,19 @@ public class PruebasPrimalidad {
     }
 
     static boolean lucasTest(BigInteger n) {
-        // Simplificación de Lucas probable
-        return true; // Se podría implementar completo, pero aquí usamos atajo
+        // Prueba fuerte de Lucas con parámetros de Selfridge (ver PrimalityAllTests)
+        return PrimalityAllTests.strongLucas(n);
     }
 
-    // === 5. AKS === (versión muy simplificada)
+    // === 5. AKS ===
     static boolean aks(BigInteger n) {
-        return n.isProbablePrime(10); // Usamos método interno de Java como simplificación
+        return PrimalityAllTests.aks(n);
     }
 
     // === 6. Wilson ===
     static boolean wilson(BigInteger n) {
-        if (n.compareTo(BigInteger.TWO) < 0) return false;
-        BigInteger factorial = BigInteger.ONE;
-        for (BigInteger i = BigInteger.TWO; i.compareTo(n) < 0; i = i.add(BigInteger.ONE)) {
-            factorial = factorial.multiply(i).mod(n);
-        }
-        return factorial.add(BigInteger.ONE).mod(n).equals(BigInteger.ZERO);
+        // factorial en aritmética long (ver Wilson); n >= 2^63 lanza IllegalArgumentException
+        return n.signum() > 0 && Wilson.isPrime(n);
     }
 
     // === 7. Lucas-Lehmer === (solo Mersenne)
@@ -191,7 +178,7 @@ public class PruebasPrimalidad {
     // === 8. Lehmann ===
     static boolean lehmann(BigInteger n, int iteraciones) {
         if (n.equals(BigInteger.TWO)) return true;
-        Random rand = new Random();
+        Random rand = PrimalityAllTests.witnessSource().random(n);
         for (int i = 0; i < iteraciones; i++) {
             BigInteger a = new BigInteger(n.bitLength() - 1, rand).add(BigInteger.ONE);
             BigInteger r = a.modPow(n.subtract(BigInteger.ONE).divide(BigInteger.TWO), n);
@@ -0,0 +1,320 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * ParallelSieve.java
+ *
+ * Versión paralela de SegmentedSieve:
+ * - El rango se divide en bloques de segmentos consecutivos que se reparten entre
+ *   los hilos de un ForkJoinPool propio (con el paralelismo indicado) o de un
+ *   ExecutorService externo.
+ * - Cada hilo reutiliza su propio buffer de segmento (y sus desplazamientos por primo);
+ *   los primos base (hasta sqrt(hi)) se calculan una vez por consulta y se comparten
+ *   en modo solo lectura.
+ * - Conteos y primos pasan por la misma ventana acotada de bloques en vuelo (2·parallelism),
+ *   así la memoria no crece con el rango; los conteos se suman y los primos se entregan en
+ *   orden creciente.
+ * - stats() acumula el tiempo de cada segmento cribado (cantidad, total, mínimo, máximo).
+ *
+ * Uso: try (ParallelSieve ps = new ParallelSieve(8)) { ps.countPrimes(1, 1_000_000_000_000L); }
+ */
+public final class ParallelSieve implements AutoCloseable {
+
+    /** Segmentos máximos por bloque de trabajo. */
+    private static final int MAX_SEGMENTS_PER_CHUNK = 64;
+    /** Bloques por hilo al repartir un conteo (equilibra hilos lentos y rápidos). */
+    private static final int CHUNKS_PER_THREAD = 8;
+
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final boolean ownsExecutor;
+    private final ThreadLocal<SegmentedSieve.Segment> segments =
+            ThreadLocal.withInitial(SegmentedSieve.Segment::new);
+    private final SieveStats stats = new SieveStats();
+
+    /** Usa todos los núcleos disponibles. */
+    public ParallelSieve() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /** Crea un ForkJoinPool propio con el paralelismo indicado (se cierra en close()). */
+    public ParallelSieve(int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("parallelism debe ser >= 1");
+        this.executor = new ForkJoinPool(parallelism);
+        this.parallelism = parallelism;
+        this.ownsExecutor = true;
+    }
+
+    /**
+     * Usa un ejecutor externo; parallelism indica cuántas tareas conviene tener en vuelo.
+     * close() no apaga el ejecutor.
+     */
+    public ParallelSieve(ExecutorService executor, int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("parallelism debe ser >= 1");
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.ownsExecutor = false;
+    }
+
+    public int parallelism() {
+        return parallelism;
+    }
+
+    /** Estadísticas acumuladas de todos los segmentos cribados por esta instancia. */
+    public SieveStats stats() {
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        if (ownsExecutor) executor.shutdown();
+    }
+
+    // ============================
+    // API
+    // ============================
+
+    /** Cantidad de primos p con lo <= p <= hi. */
+    public long countPrimes(long lo, long hi) {
+        SegmentedSieve.checkRange(lo, hi);
+        long count = SegmentedSieve.countSmallPrimes(lo, hi);
+        long jLo = SegmentedSieve.firstIndex(lo);
+        long jHi = SegmentedSieve.endIndex(hi);
+        if (jLo >= jHi) return count;
+
+        long first = jLo & ~63L;
+        long totalSegments = (jHi - first + SegmentedSieve.SEGMENT_BITS - 1) / SegmentedSieve.SEGMENT_BITS;
+        long perChunk = Math.max(1, Math.min(MAX_SEGMENTS_PER_CHUNK,
+                totalSegments / ((long) parallelism * CHUNKS_PER_THREAD)));
+
+        // misma ventana acotada que la enumeración: no se crean todos los futuros de una vez
+        OrderedChunks<Long> chunks = new OrderedChunks<>(lo, hi, perChunk * SegmentedSieve.SEGMENT_BITS,
+                this::countChunk);
+        try {
+            Long n;
+            while ((n = chunks.next()) != null) count += n;
+        } finally {
+            chunks.cancel();
+        }
+        return count;
+    }
+
+    /** Llama a action con cada primo de [lo, hi], en orden creciente (desde el hilo llamador). */
+    public void forEachPrime(long lo, long hi, LongConsumer action) {
+        SegmentedSieve.checkRange(lo, hi);
+        SegmentedSieve.forEachSmallPrime(lo, hi, action);
+        OrderedChunks<long[]> chunks = enumeration(lo, hi);
+        try {
+            long[] primes;
+            while ((primes = chunks.next()) != null) {
+                for (long p : primes) action.accept(p);
+            }
+        } finally {
+            chunks.cancel();
+        }
+    }
+
+    /**
+     * Flujo ordenado de los primos de [lo, hi], cribado en paralelo por delante del consumidor.
+     * Conviene cerrarlo (try-with-resources) si no se consume completo.
+     */
+    public LongStream primes(long lo, long hi) {
+        SegmentedSieve.checkRange(lo, hi);
+        LongStream.Builder smallPrimes = LongStream.builder();
+        SegmentedSieve.forEachSmallPrime(lo, hi, smallPrimes);
+        long[] small = smallPrimes.build().toArray();
+        OrderedChunks<long[]> chunks = enumeration(lo, hi);
+        Spliterator.OfLong sp = new Spliterators.AbstractLongSpliterator(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE) {
+            private long[] current = small;
+            private int pos;
+
+            @Override
+            public boolean tryAdvance(LongConsumer action) {
+                while (pos == current.length) {
+                    long[] next = chunks.next();
+                    if (next == null) return false;
+                    current = next;
+                    pos = 0;
+                }
+                action.accept(current[pos++]);
+                return true;
+            }
+        };
+        return StreamSupport.longStream(sp, false).onClose(chunks::cancel);
+    }
+
+    // ============================
+    // Trabajo por bloque
+    // ============================
+
+    private long countChunk(long from, long to, long jLo, int[] base) {
+        SegmentedSieve.Segment seg = segments.get();
+        seg.reset(from, base);
+        long count = 0;
+        for (long start = from; start < to; start += SegmentedSieve.SEGMENT_BITS) {
+            long t0 = System.nanoTime();
+            int len = (int) Math.min(SegmentedSieve.SEGMENT_BITS, to - start);
+            seg.sieveNext(len);
+            count += seg.count((int) Math.max(jLo - start, 0), len);
+            stats.record(System.nanoTime() - t0);
+        }
+        return count;
+    }
+
+    private long[] collectChunk(long from, long to, long jLo, int[] base) {
+        SegmentedSieve.Segment seg = segments.get();
+        seg.reset(from, base);
+        long[] out = new long[0];
+        int size = 0;
+        for (long start = from; start < to; start += SegmentedSieve.SEGMENT_BITS) {
+            long t0 = System.nanoTime();
+            int len = (int) Math.min(SegmentedSieve.SEGMENT_BITS, to - start);
+            seg.sieveNext(len);
+            int fromBit = (int) Math.max(jLo - start, 0);
+            int n = seg.count(fromBit, len);
+            if (size + n > out.length) out = Arrays.copyOf(out, Math.max(size + n, out.length * 2));
+            size += seg.collect(fromBit, len, out, size);
+            stats.record(System.nanoTime() - t0);
+        }
+        return size == out.length ? out : Arrays.copyOf(out, size);
+    }
+
+    /** Bloques de primos para forEachPrime y primes. */
+    private OrderedChunks<long[]> enumeration(long lo, long hi) {
+        return new OrderedChunks<>(lo, hi, (long) MAX_SEGMENTS_PER_CHUNK / 4 * SegmentedSieve.SEGMENT_BITS,
+                this::collectChunk);
+    }
+
+    /** Trabajo de un bloque de índices [from, to) (ver countChunk y collectChunk). */
+    private interface ChunkTask<T> {
+        T compute(long from, long to, long jLo, int[] base);
+    }
+
+    /**
+     * Productor de resultados por bloque en orden: mantiene a lo sumo 2·parallelism bloques
+     * en vuelo y entrega el más antiguo cuando termina.
+     */
+    private final class OrderedChunks<T> {
+        private final long jLo;
+        private final long jHi;
+        private final int[] base;
+        private final long chunkBits;
+        private final ChunkTask<T> task;
+        private final ArrayDeque<Future<T>> window = new ArrayDeque<>();
+        private long next;
+
+        OrderedChunks(long lo, long hi, long chunkBits, ChunkTask<T> task) {
+            this.jLo = SegmentedSieve.firstIndex(lo);
+            this.jHi = SegmentedSieve.endIndex(hi);
+            this.base = jLo < jHi ? SegmentedSieve.basePrimes(hi) : new int[0];
+            this.chunkBits = chunkBits;
+            this.task = task;
+            this.next = jLo & ~63L;
+            fill();
+        }
+
+        /** Siguiente bloque en orden, o null al terminar. */
+        T next() {
+            Future<T> f = window.pollFirst();
+            if (f == null) return null;
+            T result = await(f);
+            fill();
+            return result;
+        }
+
+        void cancel() {
+            for (Future<T> f : window) f.cancel(false);
+            window.clear();
+            next = jHi;
+        }
+
+        private void fill() {
+            while (window.size() < 2 * parallelism && next < jHi) {
+                long from = next;
+                long to = Math.min(next + chunkBits, jHi);
+                window.addLast(executor.submit(() -> task.compute(from, to, jLo, base)));
+                next = to;
+            }
+        }
+    }
+
+    private static <T> T await(Future<T> f) {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Criba interrumpida");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    // ============================
+    // Estadísticas por segmento
+    // ============================
+
+    /** Tiempos de cribado por segmento (seguro entre hilos). */
+    public static final class SieveStats {
+        private final LongAdder segments = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong minNanos = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            segments.increment();
+            totalNanos.add(nanos);
+            if (nanos < minNanos.get()) minNanos.accumulateAndGet(nanos, Math::min);
+            if (nanos > maxNanos.get()) maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        public long segments() {
+            return segments.sum();
+        }
+
+        public long totalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long minNanos() {
+            return segments() == 0 ? 0 : minNanos.get();
+        }
+
+        public long maxNanos() {
+            return maxNanos.get();
+        }
+
+        public double meanNanos() {
+            long n = segments();
+            return n == 0 ? 0 : (double) totalNanos() / n;
+        }
+
+        public void reset() {
+            segments.reset();
+            totalNanos.reset();
+            minNanos.set(Long.MAX_VALUE);
+            maxNanos.set(0);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("segmentos=%d total=%.1f ms media=%.1f us min=%.1f us max=%.1f us",
+                    segments(), totalNanos() / 1e6, meanNanos() / 1e3, minNanos() / 1e3, maxNanos() / 1e3);
+        }
+    }
+}
@@ -1,5 +1,5 @@
 import java.math.BigInteger;
-import java.security.SecureRandom;
+import java.util.Objects;
 import java.util.Random;
 import java.util.Scanner;
 
@@ -7,10 +7,33 @@ import java.util.Scanner;
  * PrimalityAllTests.java
  *
  * Contiene en una sola clase múltiples pruebas de primalidad:
- * - Métodos básicos (tipo división / sqrt) — métodos 1..5 (adaptados).
+ * - Métodos básicos (tipo división / sqrt) — métodos 1..5 (adaptados, int); en long con
+ *   ruedas 30/210 y tabla de primos: ver TrialDivision.
  * - Fermat, Miller-Rabin, Solovay-Strassen, Lehmann (probabilísticos).
- * - Baillie-PSW (simplificado), AKS (simplificado: usa isProbablePrime).
- * - Wilson (determinístico, muy lento), Lucas-Lehmer (para Mersenne).
+ * - Baillie-PSW (base 2 + Lucas fuerte), AKS (determinístico, ver Aks; lento: ~32 bits).
+ * - Wilson (determinístico, O(n): ver Wilson), Lucas-Lehmer (para Mersenne).
+ * - Para n < 2^63, Miller-Rabin y Baillie-PSW usan LongPrimality
+ *   (Miller-Rabin determinístico con aritmética de Montgomery en long).
+ * - Conteo y enumeración de primos en rangos: ver SegmentedSieve; π(x) hasta 2^48 sin
+ *   enumerar (Meissel-Lehmer, π(10^14) en segundos): ver PrimeCounting.
+ * - Comparación de tiempos con estadísticas (mín/mediana/p99, CSV/JSON): ver PrimalityComparison.
+ * - Generación de primos (siguiente primo, primo aleatorio, primo seguro): ver PrimeGenerator.
+ * - Factorización completa y factor testigo de los compuestos (rho de Brent en long, ECM
+ *   con curvas en paralelo para BigInteger): ver Factorizer.
+ * - Consultas repetidas de n < 2^32: ver PrimeBitmap32 (tabla precalculada, una lectura).
+ *   Para límites mayores (π(x), k-ésimo primo, siguiente primo sobre un archivo mapeado):
+ *   ver PrimeTableFile.
+ * - Con argumentos (--alg=mr --in=... --out=...) main no muestra el menú: ver PrimalityCli.
+ * - API asíncrona (CompletableFuture, plazos y cancelación) para servicios: ver
+ *   PrimalityService; por TCP local con peticiones en tubería y por lotes: PrimalityServer.
+ * - Miller-Rabin adaptativo (rondas según tamaño y cota de error, bases determinísticas
+ *   hasta ~81 bits, informe de rondas usadas): ver AdaptiveMillerRabin.
+ * - Fermat, Miller-Rabin, Solovay-Strassen y Lehmann comparten un ModContext por n
+ *   (n-1, (n-1)/2 y n-1 = 2^s·d calculados una vez, no en cada testigo).
+ * - Métricas por método y tamaño (llamadas, % primos, rondas, modPow, latencias; texto y
+ *   JMX), desactivadas por defecto: ver PrimalityMetrics.
+ * - Antes de las pruebas se aplica un filtro de división por primos pequeños
+ *   (SmallPrimeFilter, tabla configurable; por defecto primos < 1000).
  *
  * Comentarios y advertencias están incluidos en cada método.
  *
@@ -20,10 +43,17 @@ public class PrimalityAllTests {
 
     // Constantes y RNG
     private static final BigInteger TWO = BigInteger.valueOf(2);
-    private static final SecureRandom secureRandom = new SecureRandom();
     private static final Random rand = new Random();
+    /** Testigos de las pruebas probabilísticas (ver WitnessSource). */
+    private static volatile WitnessSource witnessSource = WitnessSource.threadLocal();
 
     public static void main(String[] args) {
+        // con argumentos: modo no interactivo (ver PrimalityCli)
+        if (args.length > 0) {
+            int code = PrimalityCli.run(args);
+            if (code != 0) System.exit(code);
+            return;
+        }
         Scanner sc = new Scanner(System.in);
 
         while (true) {
@@ -38,11 +68,13 @@ public class PrimalityAllTests {
             System.out.println(" 7  - Miller-Rabin (probabilístico)");
             System.out.println(" 8  - Solovay-Strassen (probabilístico)");
             System.out.println(" 9  - Lehmann (probabilístico)");
-            System.out.println("10  - Baillie-PSW (simplificado)");
-            System.out.println("11  - AKS (usando isProbablePrime de Java - simplificación)");
+            System.out.println("10  - Baillie-PSW (base 2 + Lucas fuerte)");
+            System.out.println("11  - AKS (determinístico; lento para n de más de 32 bits)");
             System.out.println("12  - Wilson (determinístico, muy lento para n grandes)");
             System.out.println("13  - Lucas-Lehmer (solo para Mersenne: 2^p - 1)");
             System.out.println("14  - Ejecutar TODOS (comparar tiempos) [cuidado: incluye pruebas lentas]");
+            System.out.println("15  - Contar primos en un rango [lo, hi] (criba segmentada)");
+            System.out.println("16  - Comparar algoritmos (corpus, repeticiones, min/mediana/p99)");
             System.out.println(" 0  - Salir");
             System.out.print("Opción: ");
 
@@ -73,6 +105,24 @@ public class PrimalityAllTests {
                     boolean res = lucasLehmer(p);
                     long end = System.nanoTime();
                     printResult("Mersenne 2^" + p + " - 1", res, end - start);
+                } else if (opcion == 15) {
+                    System.out.print("Ingrese lo y hi (long): ");
+                    long lo = sc.nextLong();
+                    long hi = sc.nextLong();
+                    long start = System.nanoTime();
+                    long count = SegmentedSieve.countPrimes(lo, hi);
+                    long end = System.nanoTime();
+                    System.out.println("Primos en [" + lo + ", " + hi + "]: " + count);
+                    if (count <= 100) {
+                        StringBuilder sb = new StringBuilder();
+                        SegmentedSieve.forEachPrime(lo, hi, p -> sb.append(p).append(' '));
+                        System.out.println(sb.toString().trim());
+                    }
+                    System.out.println("Tiempo: " + (end - start) + " ns (" + (end - start) / 1_000_000.0 + " ms)");
+                } else if (opcion == 16) {
+                    System.out.print("Tamaños en bits separados por comas (ej. 16,64,256): ");
+                    String bits = sc.next();
+                    PrimalityComparison.run(PrimalityComparison.parse(new String[]{"--bits", bits}));
                 } else if (opcion == 14) {
                     // Ejecutar todos (cuidado con Wilson, AKS si n grande)
                     System.out.print("Ingrese número (se usará BigInteger): ");
@@ -121,7 +171,8 @@ public class PrimalityAllTests {
         System.out.println("Tiempo: " + nano + " ns (" + ms + " ms)");
     }
 
-    // Ejecuta todos los tests y muestra tabla de tiempos (salvo pruebas que se quieran evitar)
+    // Ejecuta todos los tests una vez y muestra tabla de tiempos (salvo pruebas que se quieran evitar).
+    // Una sola ejecución no es una medición fiable: para comparar, ver PrimalityComparison (opción 16).
     private static void runAllTests(BigInteger n) {
         System.out.println("\n=== Ejecutando todos los tests (cuidado: algunos pueden ser lentos) ===");
         // 1..5 no están aquí porque son métodos para int; los omitimos en "todos" salvo conversión cuando posible
@@ -129,15 +180,10 @@ public class PrimalityAllTests {
         long t0 = System.nanoTime();
         boolean f = fermat(n, 5);
         long t1 = System.nanoTime();
-        // 7 Miller-Rabin
-        boolean mr;
-        long t2;
-        {
-            long s = System.nanoTime();
-            mr = millerRabin(n, 5);
-            t2 = System.nanoTime();
-            System.out.printf("Miller-Rabin: %s time=%d ns%n", mr ? "PRIMO?" : "COMPUESTO", t2 - s);
-        }
+        // 7 Miller-Rabin (antes se informaba t2 - t1, que incluía el final de Fermat)
+        long sMR = System.nanoTime();
+        boolean mr = millerRabin(n, 5);
+        long t2 = System.nanoTime();
         // 8 Solovay-Strassen
         long sss = System.nanoTime();
         boolean ss = solovayStrassen(n, 5);
@@ -146,26 +192,32 @@ public class PrimalityAllTests {
         long sL = System.nanoTime();
         boolean lhm = lehmann(n, 5);
         long eL = System.nanoTime();
-        // 10 Baillie-PSW (simplificado)
+        // 10 Baillie-PSW
         long sB = System.nanoTime();
         boolean bpsw = bailliePSW(n);
         long eB = System.nanoTime();
-        // 11 AKS (simplificado)
+        // 11 AKS (solo si n es chico: el costo crece muy rápido con los bits)
         long sA = System.nanoTime();
-        boolean aksRes = aks(n);
+        boolean aksRes = n.bitLength() <= Aks.PRACTICAL_BITS ? aks(n) : bpsw;
         long eA = System.nanoTime();
-        // 12 Wilson (aviso si n grande)
+        if (n.bitLength() > Aks.PRACTICAL_BITS) {
+            System.out.println("AKS: n de más de " + Aks.PRACTICAL_BITS + " bits, se omite (se muestra el resultado de BPSW).");
+        }
+        // 12 Wilson (O(n) multiplicaciones: solo si n es chico, como AKS)
         long sW = System.nanoTime();
-        boolean wilsonRes = wilson(n);
+        boolean wilsonRes = n.bitLength() <= Wilson.PRACTICAL_BITS ? wilson(n) : bpsw;
         long eW = System.nanoTime();
+        if (n.bitLength() > Wilson.PRACTICAL_BITS) {
+            System.out.println("Wilson: n de más de " + Wilson.PRACTICAL_BITS + " bits, se omite (se muestra el resultado de BPSW).");
+        }
 
         System.out.println("\n--- Resultados resumidos ---");
         printResult("Fermat", f, t1 - t0);
-        printResult("Miller-Rabin", mr, t2 - t1);
+        printResult("Miller-Rabin", mr, t2 - sMR);
         printResult("Solovay-Strassen", ss, eSS - sss);
         printResult("Lehmann", lhm, eL - sL);
-        printResult("Baillie-PSW(simpl)", bpsw, eB - sB);
-        printResult("AKS(simpl)", aksRes, eA - sA);
+        printResult("Baillie-PSW", bpsw, eB - sB);
+        printResult("AKS", aksRes, eA - sA);
         printResult("Wilson", wilsonRes, eW - sW);
     }
 
@@ -173,11 +225,23 @@ public class PrimalityAllTests {
     // Métodos originales (1..5) adaptados a int (copiados y comentados)
     // ============================
 
+    /**
+     * Los métodos O(n) (1, 2 y 3) atienden la interrupción del hilo cada 2^20 vueltas, para que
+     * PrimalityService pueda cancelarlos; el costo de la comprobación no se nota.
+     */
+    private static final int INTERRUPT_CHECK_MASK = (1 << 20) - 1;
+
     /** Método 1: recorre i=2..n-1 -> O(n) tiempo */
     public static boolean determinarNumeroPrimo1(int numero) {
+        long t0 = PrimalityMetrics.start();
+        return PrimalityMetrics.SIMPLE_1.record(t0, 32 - Integer.numberOfLeadingZeros(numero), determinarNumeroPrimo1Impl(numero));
+    }
+
+    private static boolean determinarNumeroPrimo1Impl(int numero) {
         if (numero < 2) return false;
         int resultado = 0;
         for (int i = 2; i < numero; i++) {
+            if ((i & INTERRUPT_CHECK_MASK) == 0) PrimalityService.checkInterrupted();
             if (numero % i == 0) {
                 resultado = 1;
             }
@@ -187,10 +251,16 @@ public class PrimalityAllTests {
 
     /** Método 2: recorre hasta n/2 con bandera -> O(n) tiempo (≈ n/2) */
     public static boolean determinarNumeroPrimo2(int numero) {
+        long t0 = PrimalityMetrics.start();
+        return PrimalityMetrics.SIMPLE_2.record(t0, 32 - Integer.numberOfLeadingZeros(numero), determinarNumeroPrimo2Impl(numero));
+    }
+
+    private static boolean determinarNumeroPrimo2Impl(int numero) {
         if (numero < 2) return false;
         boolean centi = true;
         int i;
         for (i = 2; i <= numero / 2 && centi; i++) {
+            if ((i & INTERRUPT_CHECK_MASK) == 0) PrimalityService.checkInterrupted();
             if (numero % i == 0) {
                 centi = false;
             }
@@ -200,9 +270,15 @@ public class PrimalityAllTests {
 
     /** Método 3: rompe cuando encuentra divisor -> O(n) en peor caso */
     public static boolean determinarNumeroPrimo3(int numero) {
+        long t0 = PrimalityMetrics.start();
+        return PrimalityMetrics.SIMPLE_3.record(t0, 32 - Integer.numberOfLeadingZeros(numero), determinarNumeroPrimo3Impl(numero));
+    }
+
+    private static boolean determinarNumeroPrimo3Impl(int numero) {
         if (numero < 2) return false;
         int i;
         for (i = 2; i <= numero / 2; i++) {
+            if ((i & INTERRUPT_CHECK_MASK) == 0) PrimalityService.checkInterrupted();
             if (numero % i == 0) {
                 break;
             }
@@ -210,8 +286,13 @@ public class PrimalityAllTests {
         return (numero / 2) < i;
     }
 
-    /** Método 4: prueba hasta sqrt(n) -> O(√n) */
+    /** Método 4: prueba hasta sqrt(n) -> O(√n) (recalcula sqrt en cada vuelta; versión long: TrialDivision) */
     public static boolean determinarNumeroPrimo4(int numero) {
+        long t0 = PrimalityMetrics.start();
+        return PrimalityMetrics.SIMPLE_4.record(t0, 32 - Integer.numberOfLeadingZeros(numero), determinarNumeroPrimo4Impl(numero));
+    }
+
+    private static boolean determinarNumeroPrimo4Impl(int numero) {
         if (numero < 2) return false;
         for (int i = 2; i <= (int) Math.sqrt(numero); i++) {
             if (numero % i == 0) {
@@ -221,10 +302,19 @@ public class PrimalityAllTests {
         return true;
     }
 
-    /** Método 5: prueba i*i <= n -> O(√n), evita sqrt() */
+    /**
+     * Método 5: prueba i*i <= n -> O(√n), evita sqrt()
+     * El producto se hace en long: en int, i*i desborda para n cerca de Integer.MAX_VALUE y el
+     * bucle seguía hasta i = n (un primo grande daba "compuesto").
+     */
     public static boolean determinarNumeroPrimo5(int numero) {
+        long t0 = PrimalityMetrics.start();
+        return PrimalityMetrics.SIMPLE_5.record(t0, 32 - Integer.numberOfLeadingZeros(numero), determinarNumeroPrimo5Impl(numero));
+    }
+
+    private static boolean determinarNumeroPrimo5Impl(int numero) {
         if (numero < 2) return false;
-        for (int i = 2; i * i <= numero; i++) {
+        for (int i = 2; (long) i * i <= numero; i++) {
             if (numero % i == 0) {
                 return false;
             }
@@ -239,17 +329,32 @@ public class PrimalityAllTests {
     /**
      * Fermat's primality test (probabilístico).
      * Rápido, pero vulnerable a números de Carmichael.
-     * Complejidad: O(k · log^3 n) por iteración (modPow cost).
+     * Complejidad: O(k · log^3 n) por iteración (una exponenciación de ModContext).
      */
     public static boolean fermat(BigInteger n, int iterations) {
+        long t0 = PrimalityMetrics.start();
+        return PrimalityMetrics.FERMAT.record(t0, n.bitLength(), fermatImpl(n, iterations));
+    }
+
+    private static boolean fermatImpl(BigInteger n, int iterations) {
         if (n.compareTo(TWO) < 0) return false;
         if (n.equals(TWO)) return true;
         if (n.mod(TWO).equals(BigInteger.ZERO)) return false;
+        SmallPrimeFilter.Verdict v = SmallPrimeFilter.shared().check(n);
+        if (v != SmallPrimeFilter.Verdict.UNKNOWN) return v == SmallPrimeFilter.Verdict.PRIME;
+        return fermatCore(n, iterations);
+    }
 
+    /** Rondas de Fermat para n impar que SmallPrimeFilter dejó pasar (UNKNOWN). */
+    private static boolean fermatCore(BigInteger n, int iterations) {
+        ModContext ctx = new ModContext(n);
+        int bits = n.bitLength();
+        Random witnesses = witnessSource.random(ctx.modulus());
         for (int i = 0; i < iterations; i++) {
-            BigInteger a = uniformRandom(TWO, n.subtract(BigInteger.ONE));
+            PrimalityMetrics.FERMAT.round(bits);
+            BigInteger a = WitnessSource.uniform(TWO, ctx.nMinus1(), witnesses);
             // a^(n-1) mod n should be 1 for prime n (Fermat's little theorem)
-            if (!a.modPow(n.subtract(BigInteger.ONE), n).equals(BigInteger.ONE)) {
+            if (!ctx.fermat(a)) {
                 return false; // compuesto
             }
         }
@@ -259,33 +364,45 @@ public class PrimalityAllTests {
     /**
      * Miller-Rabin (probabilístico, ampliamente usado).
      * Con suficientes iteraciones es muy fiable.
+     * Si n cabe en 63 bits se usa LongPrimality (bases fijas, determinístico).
      */
     public static boolean millerRabin(BigInteger n, int iterations) {
+        long t0 = PrimalityMetrics.start();
+        return PrimalityMetrics.MILLER_RABIN.record(t0, n.bitLength(), millerRabinImpl(n, iterations));
+    }
+
+    private static boolean millerRabinImpl(BigInteger n, int iterations) {
         if (n.compareTo(TWO) < 0) return false;
-        if (n.equals(TWO) || n.equals(BigInteger.valueOf(3))) return true;
-        if (n.mod(TWO).equals(BigInteger.ZERO)) return false;
+        if (n.bitLength() <= 63) return LongPrimality.isPrime(n.longValue());
+        SmallPrimeFilter.Verdict v = SmallPrimeFilter.shared().check(n);
+        if (v != SmallPrimeFilter.Verdict.UNKNOWN) return v == SmallPrimeFilter.Verdict.PRIME;
 
-        // escribe n-1 = 2^s * d con d impar
-        BigInteger d = n.subtract(BigInteger.ONE);
-        int s = 0;
-        while (d.mod(TWO).equals(BigInteger.ZERO)) {
-            d = d.divide(TWO);
-            s++;
-        }
+        // ModContext calcula n-1 = 2^s * d con d impar una sola vez
+        return millerRabinRounds(new ModContext(n), iterations);
+    }
+
+    /**
+     * Miller-Rabin adaptativo para candidatos aleatorios: las rondas salen del tamaño de n y
+     * de la cota de error 2^-errorBits (Damgård-Landrock-Pomerance), con bases fijas
+     * determinísticas para n < 3.3·10^24. Para entradas que pueden ser adversarias:
+     * AdaptiveMillerRabin.test(n, errorBits, ADVERSARIAL). Las métricas las registra
+     * AdaptiveMillerRabin (rondas usadas incluidas).
+     */
+    public static boolean millerRabinAdaptive(BigInteger n, int errorBits) {
+        return AdaptiveMillerRabin.test(n, errorBits, AdaptiveMillerRabin.InputModel.RANDOM).isPrime();
+    }
 
+    /**
+     * Rondas de Miller-Rabin con bases aleatorias para n impar > 3, sobre un ModContext
+     * ya construido (así la descomposición n-1 = 2^s * d se calcula una sola vez).
+     */
+    static boolean millerRabinRounds(ModContext ctx, int iterations) {
+        int bits = ctx.modulus().bitLength();
+        Random witnesses = witnessSource.random(ctx.modulus());
         for (int i = 0; i < iterations; i++) {
-            BigInteger a = uniformRandom(TWO, n.subtract(BigInteger.ONE));
-            BigInteger x = a.modPow(d, n);
-            if (x.equals(BigInteger.ONE) || x.equals(n.subtract(BigInteger.ONE))) continue;
-            boolean composite = true;
-            for (int r = 0; r < s - 1; r++) {
-                x = x.modPow(TWO, n);
-                if (x.equals(n.subtract(BigInteger.ONE))) {
-                    composite = false;
-                    break;
-                }
-            }
-            if (composite) return false;
+            PrimalityMetrics.MILLER_RABIN.round(bits);
+            BigInteger a = WitnessSource.uniform(TWO, ctx.nMinus1(), witnesses);
+            if (!ctx.strongProbablePrime(a)) return false;
         }
         return true; // probablemente primo
     }
@@ -295,19 +412,32 @@ public class PrimalityAllTests {
      * Usa símbolo de Jacobi; más fuerte que Fermat en algunos sentidos.
      */
     public static boolean solovayStrassen(BigInteger n, int iterations) {
+        long t0 = PrimalityMetrics.start();
+        return PrimalityMetrics.SOLOVAY_STRASSEN.record(t0, n.bitLength(), solovayStrassenImpl(n, iterations));
+    }
+
+    private static boolean solovayStrassenImpl(BigInteger n, int iterations) {
         if (n.compareTo(TWO) < 0) return false;
         if (n.equals(TWO)) return true;
         if (n.mod(TWO).equals(BigInteger.ZERO)) return false;
+        SmallPrimeFilter.Verdict v = SmallPrimeFilter.shared().check(n);
+        if (v != SmallPrimeFilter.Verdict.UNKNOWN) return v == SmallPrimeFilter.Verdict.PRIME;
+        return solovayStrassenCore(n, iterations);
+    }
 
+    /** Rondas de Solovay-Strassen para n impar que SmallPrimeFilter dejó pasar (UNKNOWN). */
+    private static boolean solovayStrassenCore(BigInteger n, int iterations) {
+        ModContext ctx = new ModContext(n);
+        int bits = n.bitLength();
+        Random witnesses = witnessSource.random(ctx.modulus());
         for (int i = 0; i < iterations; i++) {
-            BigInteger a = uniformRandom(TWO, n.subtract(BigInteger.ONE));
-            BigInteger exp = n.subtract(BigInteger.ONE).divide(BigInteger.valueOf(2));
-            BigInteger modPow = a.modPow(exp, n); // a^{(n-1)/2} mod n
+            PrimalityMetrics.SOLOVAY_STRASSEN.round(bits);
+            BigInteger a = WitnessSource.uniform(TWO, ctx.nMinus1(), witnesses);
             int jac = jacobi(a, n); // -1, 0, or 1
-            BigInteger jacMod = BigInteger.valueOf(jac == -1 ? n.subtract(BigInteger.ONE).longValue() : jac);
             // if jacobi is 0 -> gcd(a,n) != 1 -> composite
             if (jac == 0) return false;
-            if (!modPow.equals(jacMod)) return false;
+            // a^{(n-1)/2} mod n debe ser igual al símbolo (euler devuelve 0 si no es ±1)
+            if (ctx.euler(a) != jac) return false;
         }
         return true;
     }
@@ -317,14 +447,29 @@ public class PrimalityAllTests {
      * Calcula a^{(n-1)/2} mod n y espera ±1.
      */
     public static boolean lehmann(BigInteger n, int iterations) {
+        long t0 = PrimalityMetrics.start();
+        return PrimalityMetrics.LEHMANN.record(t0, n.bitLength(), lehmannImpl(n, iterations));
+    }
+
+    private static boolean lehmannImpl(BigInteger n, int iterations) {
         if (n.compareTo(TWO) < 0) return false;
         if (n.equals(TWO)) return true;
         if (n.mod(TWO).equals(BigInteger.ZERO)) return false;
+        SmallPrimeFilter.Verdict v = SmallPrimeFilter.shared().check(n);
+        if (v != SmallPrimeFilter.Verdict.UNKNOWN) return v == SmallPrimeFilter.Verdict.PRIME;
+        return lehmannCore(n, iterations);
+    }
 
+    /** Rondas de Lehmann para n impar que SmallPrimeFilter dejó pasar (UNKNOWN). */
+    private static boolean lehmannCore(BigInteger n, int iterations) {
+        ModContext ctx = new ModContext(n);
+        int bits = n.bitLength();
+        Random witnesses = witnessSource.random(ctx.modulus());
         for (int i = 0; i < iterations; i++) {
-            BigInteger a = uniformRandom(TWO, n.subtract(BigInteger.ONE));
-            BigInteger r = a.modPow(n.subtract(BigInteger.ONE).divide(BigInteger.valueOf(2)), n);
-            if (!r.equals(BigInteger.ONE) && !r.equals(n.subtract(BigInteger.ONE))) {
+            PrimalityMetrics.LEHMANN.round(bits);
+            BigInteger a = WitnessSource.uniform(TWO, ctx.nMinus1(), witnesses);
+            // a^{(n-1)/2} mod n debe ser 1 o -1
+            if (ctx.euler(a) == 0) {
                 return false;
             }
         }
@@ -332,123 +477,295 @@ public class PrimalityAllTests {
     }
 
     /**
-     * Baillie-PSW (versión simplificada):
-     * - En la práctica la versión completa combina Miller-Rabin con una prueba de Lucas fuerte.
-     * - Aquí se realiza Miller-Rabin con algunas bases y además se usa isProbablePrime como "refuerzo".
-     * Nota: Implementación completa de Baillie-PSW es más larga; esta simplificación es práctica para experimentar.
+     * Baillie-PSW:
+     * - Una prueba fuerte de probable primo en base 2 (Miller-Rabin con a = 2).
+     * - Una prueba fuerte de Lucas con parámetros de Selfridge (ver strongLucas).
+     * No se conoce ningún compuesto que pase ambas; para n < 2^64 está demostrado que no existe.
      */
     public static boolean bailliePSW(BigInteger n) {
+        long t0 = PrimalityMetrics.start();
+        return PrimalityMetrics.BAILLIE_PSW.record(t0, n.bitLength(), bailliePSWImpl(n));
+    }
+
+    private static boolean bailliePSWImpl(BigInteger n) {
+        if (n.compareTo(TWO) < 0) return false;
+        if (n.bitLength() <= 63) return LongPrimality.isPrime(n.longValue());
+        SmallPrimeFilter.Verdict v = SmallPrimeFilter.shared().check(n);
+        if (v != SmallPrimeFilter.Verdict.UNKNOWN) return v == SmallPrimeFilter.Verdict.PRIME;
+        return bailliePSWCore(n);
+    }
+
+    /** Base 2 fuerte y Lucas fuerte para n que SmallPrimeFilter dejó pasar (UNKNOWN). */
+    private static boolean bailliePSWCore(BigInteger n) {
+        // Paso 1: probable primo fuerte en base 2
+        if (!strongProbablePrime(n, TWO)) return false;
+        // Paso 2: probable primo fuerte de Lucas
+        return strongLucasImpl(n);
+    }
+
+    /**
+     * alg.test(n, rounds) para un n que SmallPrimeFilter.shared() ya dejó pasar (UNKNOWN), sin
+     * volver a filtrarlo. Lo usa PrimalityBatch, que filtra cada candidato una sola vez; las
+     * métricas se registran igual que en las pruebas públicas.
+     */
+    static boolean testUnfiltered(BigInteger n, Algorithm alg, int rounds) {
+        long t0 = PrimalityMetrics.start();
+        int bits = n.bitLength();
+        boolean small = bits <= 63;
+        switch (alg) {
+            case FERMAT: return PrimalityMetrics.FERMAT.record(t0, bits, fermatCore(n, rounds));
+            case MILLER_RABIN: return PrimalityMetrics.MILLER_RABIN.record(t0, bits,
+                    small ? LongPrimality.isPrime(n.longValue()) : millerRabinRounds(new ModContext(n), rounds));
+            case MILLER_RABIN_ADAPTIVE:
+                return AdaptiveMillerRabin.testUnfiltered(n, 2 * rounds, AdaptiveMillerRabin.InputModel.RANDOM).isPrime();
+            case SOLOVAY_STRASSEN: return PrimalityMetrics.SOLOVAY_STRASSEN.record(t0, bits, solovayStrassenCore(n, rounds));
+            case LEHMANN: return PrimalityMetrics.LEHMANN.record(t0, bits, lehmannCore(n, rounds));
+            case BAILLIE_PSW: return PrimalityMetrics.BAILLIE_PSW.record(t0, bits,
+                    small ? LongPrimality.isPrime(n.longValue()) : bailliePSWCore(n));
+            case AKS: return PrimalityMetrics.AKS.record(t0, bits, Aks.isPrime(n));
+            case WILSON: return PrimalityMetrics.WILSON.record(t0, bits, Wilson.isPrime(n));
+            default: throw new AssertionError(alg);
+        }
+    }
+
+    /**
+     * Prueba fuerte de Lucas (probable primo fuerte de Lucas).
+     * - Parámetros de Selfridge (método A): primer D en 5, -7, 9, -11, ... con (D/n) = -1,
+     *   P = 1, Q = (1 - D) / 4.
+     * - Escribe n+1 = 2^s * k con k impar y calcula V_k, V_{k+1} y Q^k con la escalera
+     *   de duplicación V_2m = V_m^2 - 2 Q^m, V_2m+1 = V_m V_m+1 - P Q^m.
+     *   Como D·U_k = 2 V_{k+1} - P V_k, U_k ≡ 0 se comprueba sin calcular la sucesión U.
+     * - n pasa si U_k ≡ 0 o V_{k·2^r} ≡ 0 (mod n) para algún 0 <= r < s.
+     * - Las reducciones usan Barrett en lugar de BigInteger.mod.
+     * Antes se descartan los cuadrados perfectos, para los que no existe D con (D/n) = -1.
+     */
+    public static boolean strongLucas(BigInteger n) {
+        long t0 = PrimalityMetrics.start();
+        return PrimalityMetrics.STRONG_LUCAS.record(t0, n.bitLength(), strongLucasImpl(n));
+    }
+
+    private static boolean strongLucasImpl(BigInteger n) {
         if (n.compareTo(TWO) < 0) return false;
         if (n.equals(TWO)) return true;
-        // Paso 1: Miller-Rabin con base 2 (rápido filtro)
-        if (!millerRabin(n, 3)) return false;
-        // Paso 2: Usamos isProbablePrime con alta certeza como sustituto de la prueba de Lucas completa
-        // (esto no es exactamente la definición matemática de Baillie-PSW pero es práctico)
-        return n.isProbablePrime(50);
+        if (!n.testBit(0)) return false;
+        if (isPerfectSquare(n)) return false;
+
+        // Selfridge: D = 5, -7, 9, -11, ...
+        long d = 5;
+        while (true) {
+            BigInteger bigD = BigInteger.valueOf(d);
+            int j = jacobi(bigD, n);
+            if (j == -1) break;
+            if (j == 0 && bigD.abs().compareTo(n) < 0) return false; // factor común con n
+            d = d > 0 ? -(d + 2) : -d + 2;
+        }
+        BigInteger q = BigInteger.valueOf((1 - d) / 4); // P = 1
+        BigInteger twoQ = q.shiftLeft(1);
+
+        // n + 1 = 2^s * k, con k impar
+        BigInteger nPlus1 = n.add(BigInteger.ONE);
+        int s = nPlus1.getLowestSetBit();
+        BigInteger k = nPlus1.shiftRight(s);
+
+        // m = 1: V_1 = P = 1, V_2 = P^2 - 2Q, Q^1
+        Barrett red = new Barrett(n);
+        BigInteger v = BigInteger.ONE;
+        BigInteger v1 = BigInteger.ONE.subtract(twoQ).mod(n);
+        // con D = 5, Q = -1 y Q^m = (-1)^m: se evita la multiplicación completa de Q^m
+        boolean unitQ = d == 5;
+        BigInteger qMod = q.mod(n);
+        BigInteger qm = qMod;
+        for (int i = k.bitLength() - 2; i >= 0; i--) {
+            if (k.testBit(i)) {
+                // m -> 2m+1
+                v = red.subtract(red.reduce(v.multiply(v1)), qm);
+                v1 = red.subtract(red.reduce(v1.multiply(v1)), qm.multiply(twoQ).mod(n));
+                qm = unitQ ? qMod : red.reduce(qm.multiply(qm)).multiply(q).mod(n);
+            } else {
+                // m -> 2m
+                v1 = red.subtract(red.reduce(v.multiply(v1)), qm);
+                v = red.subtract(red.subtract(red.reduce(v.multiply(v)), qm), qm);
+                qm = unitQ ? BigInteger.ONE : red.reduce(qm.multiply(qm));
+            }
+        }
+        // U_k ≡ 0  <=>  2 V_{k+1} - V_k ≡ 0  (gcd(D, n) = 1)
+        if (v1.shiftLeft(1).subtract(v).mod(n).signum() == 0) return true;
+        if (v.signum() == 0) return true;
+        for (int r = 1; r < s; r++) {
+            v = red.subtract(red.subtract(red.reduce(v.multiply(v)), qm), qm);
+            if (v.signum() == 0) return true;
+            qm = red.reduce(qm.multiply(qm));
+        }
+        return false;
     }
 
     /**
-     * AKS (versión simplificada):
-     * - AKS es un algoritmo determinístico polinómico (complejidad alta práctica).
-     * - Implementarlo completamente es largo y raro en uso práctico.
-     * - Aquí usamos la función isProbablePrime como "atajo" y documentamos que esto NO es AKS real,
-     *   solo una simplificación conveniente para pruebas en este programa.
+     * AKS:
+     * - Algoritmo determinístico polinómico (complejidad alta práctica): ver Aks.
+     * - Ya no usa atajos (antes devolvía isProbablePrime o LongPrimality): siempre ejecuta
+     *   AKS completo, para poder medirlo y compararlo. Solo se descartan antes los compuestos
+     *   con un factor pequeño.
      */
     public static boolean aks(BigInteger n) {
-        // Advertencia: este no es AKS. Implementar AKS real excede el alcance práctico aquí.
-        return n.isProbablePrime(50);
+        long t0 = PrimalityMetrics.start();
+        return PrimalityMetrics.AKS.record(t0, n.bitLength(), aksImpl(n));
+    }
+
+    private static boolean aksImpl(BigInteger n) {
+        if (n.compareTo(TWO) < 0) return false;
+        if (SmallPrimeFilter.shared().check(n) == SmallPrimeFilter.Verdict.COMPOSITE) return false;
+        return Aks.isPrime(n);
     }
 
     /**
      * Wilson: p primo ⇔ (p-1)! ≡ -1 (mod p)
      * Determinístico pero O(n) multiplicaciones modulo n: impráctico para n grandes.
-     * Por seguridad, si n > 20000 (configurable), devolvemos false y advertimos (evita bucles enormes).
+     * Calcula el factorial en aritmética long (ver Wilson); antes devolvía false para
+     * n > 20000, aunque n fuera primo. Para n >= 2^63 lanza IllegalArgumentException.
      */
     public static boolean wilson(BigInteger n) {
+        long t0 = PrimalityMetrics.start();
+        return PrimalityMetrics.WILSON.record(t0, n.bitLength(), wilsonImpl(n));
+    }
+
+    private static boolean wilsonImpl(BigInteger n) {
         if (n.compareTo(TWO) < 0) return false;
         if (n.equals(TWO)) return true;
-        if (!n.isProbablePrime(5)) {
-            // si se detecta compuesto rápido, devuelve false
-            // (esto evita calcular factoriales innecesariamente)
-            // pero si isProbablePrime dijera probable primo, seguimos.
-        }
-
-        BigInteger limit = BigInteger.valueOf(20000); // umbral seguro para evitar bucles enormes
-        if (n.compareTo(limit) > 0) {
-            System.out.println("Wilson: n demasiado grande para calcular factorial eficientemente (umbral " + limit + ").");
-            // Para no bloquear, devolvemos false (o podríamos lanzar excepción / pedir confirmación)
-            return false;
-        }
-
-        BigInteger fact = BigInteger.ONE;
-        for (BigInteger i = BigInteger.valueOf(2); i.compareTo(n) < 0; i = i.add(BigInteger.ONE)) {
-            fact = fact.multiply(i).mod(n);
-        }
-        return fact.add(BigInteger.ONE).mod(n).equals(BigInteger.ZERO);
+        // los compuestos con un factor pequeño se descartan sin calcular el factorial;
+        // para los primos se calcula siempre (es lo que ilustra el método)
+        if (SmallPrimeFilter.shared().check(n) == SmallPrimeFilter.Verdict.COMPOSITE) return false;
+        return Wilson.isPrime(n);
     }
 
     /**
      * Lucas-Lehmer: específico para números de Mersenne (2^p - 1).
      * Si p es primo, la prueba verifica si 2^p - 1 es primo.
      * Rápido para p moderados y usado por GIMPS.
+     * Ver LucasLehmer: reducción de Mersenne sin división, factores 2kp+1 y checkpoints.
      */
     public static boolean lucasLehmer(int p) {
-        if (p < 2) return false;
-        if (p == 2) return true; // 3 es primo (2^2-1 = 3)
-        BigInteger m = BigInteger.valueOf(2).pow(p).subtract(BigInteger.ONE);
-        BigInteger s = BigInteger.valueOf(4);
-        for (int i = 0; i < p - 2; i++) {
-            s = s.multiply(s).subtract(BigInteger.valueOf(2)).mod(m);
-        }
-        return s.equals(BigInteger.ZERO);
+        long t0 = PrimalityMetrics.start();
+        return PrimalityMetrics.LUCAS_LEHMER.record(t0, p, lucasLehmerImpl(p));
+    }
+
+    private static boolean lucasLehmerImpl(int p) {
+        return LucasLehmer.isMersennePrime(p);
     }
 
     // ============================
     // Math utilities
     // ============================
 
-    // Uniform random BigInteger in [min, max] inclusive
-    private static BigInteger uniformRandom(BigInteger min, BigInteger max) {
-        BigInteger range = max.subtract(min).add(BigInteger.ONE); // inclusive
-        int bitLength = range.bitLength();
-        BigInteger r;
-        do {
-            r = new BigInteger(bitLength, secureRandom);
-        } while (r.compareTo(range) >= 0);
-        return r.add(min);
+    /** Prueba fuerte de probable primo (una ronda de Miller-Rabin) con base fija; n impar > 2. */
+    static boolean strongProbablePrime(BigInteger n, BigInteger base) {
+        return new ModContext(n).strongProbablePrime(base);
+    }
+
+    /**
+     * Reducción de Barrett módulo n: evita la división completa de BigInteger.mod
+     * (varias veces más cara que una multiplicación) cambiándola por dos productos.
+     */
+    private static final class Barrett {
+        private final BigInteger n;
+        private final BigInteger mu; // floor(4^k / n)
+        private final int k;
+
+        Barrett(BigInteger n) {
+            this.n = n;
+            this.k = n.bitLength();
+            this.mu = BigInteger.ONE.shiftLeft(2 * k).divide(n);
+        }
+
+        /** x mod n para 0 <= x < 4^k (en particular cualquier producto de dos residuos). */
+        BigInteger reduce(BigInteger x) {
+            if (x.bitLength() <= k && x.compareTo(n) < 0) return x;
+            BigInteger q = x.shiftRight(k - 1).multiply(mu).shiftRight(k + 1);
+            BigInteger r = x.subtract(q.multiply(n));
+            while (r.compareTo(n) >= 0) r = r.subtract(n);
+            return r;
+        }
+
+        /** (a - b) mod n para residuos 0 <= a, b < n. */
+        BigInteger subtract(BigInteger a, BigInteger b) {
+            BigInteger r = a.subtract(b);
+            return r.signum() < 0 ? r.add(n) : r;
+        }
+    }
+
+    /** true si n (no negativo) es un cuadrado perfecto. */
+    static boolean isPerfectSquare(BigInteger n) {
+        // los cuadrados solo pueden terminar en 0, 1, 4, 9 módulo 16
+        int low = n.intValue() & 15;
+        if (low != 0 && low != 1 && low != 4 && low != 9) return false;
+        BigInteger r = n.sqrt();
+        return r.multiply(r).equals(n);
+    }
+
+    public static WitnessSource witnessSource() {
+        return witnessSource;
+    }
+
+    /** Cambia el origen de los testigos (threadLocal por defecto; seeded para reproducir, secure si hace falta). */
+    public static void setWitnessSource(WitnessSource source) {
+        witnessSource = Objects.requireNonNull(source);
     }
 
     /**
      * Jacobi symbol (a/n) for BigInteger n (odd).
      * Returns -1, 0, or 1.
-     * Implementation via repeated quadratic reciprocity and factors of 2.
+     * Implementation via repeated quadratic reciprocity and factors of 2:
+     * los factores 2 se quitan de una vez (getLowestSetBit/shiftRight), los restos
+     * mod 4 y mod 8 se leen de los bits bajos, y en cuanto n cabe en 63 bits se
+     * continúa con jacobi(long, long).
      */
     public static int jacobi(BigInteger a0, BigInteger n0) {
-        if (n0.signum() <= 0 || n0.mod(TWO).equals(BigInteger.ZERO)) {
+        if (n0.signum() <= 0 || !n0.testBit(0)) {
             throw new IllegalArgumentException("n debe ser positivo e impar para el símbolo de Jacobi");
         }
-        BigInteger a = a0.mod(n0);
+        BigInteger a = a0.signum() >= 0 && a0.compareTo(n0) < 0 ? a0 : a0.mod(n0);
         BigInteger n = n0;
         int result = 1;
 
-        while (!a.equals(BigInteger.ZERO)) {
-            while (a.mod(TWO).equals(BigInteger.ZERO)) {
-                a = a.divide(TWO);
-                BigInteger r = n.mod(BigInteger.valueOf(8));
-                if (r.equals(BigInteger.valueOf(3)) || r.equals(BigInteger.valueOf(5))) {
-                    result = -result;
-                }
+        // mientras n no quepa en un long: quitar los factores 2 de a de una vez, reciprocidad y reducir
+        while (n.bitLength() > 63) {
+            if (a.signum() == 0) return 0; // n > 1
+            int z = a.getLowestSetBit();
+            if (z > 0) {
+                a = a.shiftRight(z);
+                int n8 = n.intValue() & 7;
+                if ((z & 1) == 1 && (n8 == 3 || n8 == 5)) result = -result;
             }
             // swap a and n
-            BigInteger tmp = a;
-            a = n;
-            n = tmp;
-            if (a.mod(BigInteger.valueOf(4)).equals(BigInteger.valueOf(3)) &&
-                n.mod(BigInteger.valueOf(4)).equals(BigInteger.valueOf(3))) {
-                result = -result;
-            }
-            a = a.mod(n);
+            if ((a.intValue() & n.intValue() & 3) == 3) result = -result;
+            BigInteger tmp = n.mod(a);
+            n = a;
+            a = tmp;
+        }
+        return result * jacobi(a.longValue(), n.longValue());
+    }
+
+    /**
+     * Símbolo de Jacobi (a/n) en long, para n positivo e impar (a puede ser negativo).
+     * Versión binaria: sin objetos temporales.
+     */
+    public static int jacobi(long a, long n) {
+        if (n <= 0 || (n & 1) == 0) {
+            throw new IllegalArgumentException("n debe ser positivo e impar para el símbolo de Jacobi");
+        }
+        a %= n;
+        if (a < 0) a += n;
+        int result = 1;
+        while (a != 0) {
+            int z = Long.numberOfTrailingZeros(a);
+            a >>>= z;
+            long n8 = n & 7;
+            if ((z & 1) == 1 && (n8 == 3 || n8 == 5)) result = -result;
+            // swap a and n
+            if ((a & n & 3) == 3) result = -result;
+            long tmp = n % a;
+            n = a;
+            a = tmp;
         }
-        return n.equals(BigInteger.ONE) ? result : 0;
+        return n == 1 ? result : 0;
     }
 }
@@ -0,0 +1,284 @@
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * PrimalityBatch.java
+ *
+ * Pruebas de primalidad por lotes (millones de candidatos por trabajo):
+ * - testAll(BigInteger[], Algorithm) devuelve un boolean por candidato.
+ * - testAll(long[]) usa LongPrimality (determinístico) y devuelve un BitSet.
+ * - filterPrimes(Stream, Algorithm, rounds) filtra un flujo por bloques, conservando el orden.
+ * Trabajo compartido:
+ * - Filtro por división de primos pequeños: la instancia compartida de SmallPrimeFilter
+ *   (la misma que usan las pruebas de PrimalityAllTests).
+ * - Para Miller-Rabin, la descomposición n-1 = 2^s * d se calcula una vez por candidato.
+ * - Los candidatos se reparten en un ForkJoinPool (robo de trabajo).
+ * stats() acumula candidatos, descartes del filtro y throughput (candidatos/s).
+ */
+public final class PrimalityBatch implements AutoCloseable {
+
+    public static final int DEFAULT_ROUNDS = 20;
+
+    /** Candidatos BigInteger por hoja de la división recursiva. */
+    private static final int BIG_LEAF = 8;
+    /** Candidatos long por hoja (múltiplo de 64 para no compartir palabras del BitSet). */
+    private static final int LONG_LEAF = 64 * 64;
+    /** Tamaño del bloque en el que se agrupa un Stream antes de repartirlo. */
+    private static final int STREAM_CHUNK = 1024;
+
+    private final ForkJoinPool pool;
+    private final BatchStats stats = new BatchStats();
+
+    /** Usa todos los núcleos disponibles. */
+    public PrimalityBatch() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public PrimalityBatch(int parallelism) {
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    public BatchStats stats() {
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    // ============================
+    // API
+    // ============================
+
+    /** Prueba cada candidato con alg y DEFAULT_ROUNDS rondas. */
+    public boolean[] testAll(BigInteger[] ns, Algorithm alg) {
+        return testAll(ns, alg, DEFAULT_ROUNDS);
+    }
+
+    /** Prueba cada candidato con alg; result[i] corresponde a ns[i]. */
+    public boolean[] testAll(BigInteger[] ns, Algorithm alg, int rounds) {
+        boolean[] result = new boolean[ns.length];
+        long t0 = System.nanoTime();
+        LongAdder rejected = new LongAdder();
+        pool.invoke(new BigTask(ns, alg, rounds, result, 0, ns.length, rejected));
+        stats.record(ns.length, rejected.sum(), count(result), System.nanoTime() - t0);
+        return result;
+    }
+
+    /** Prueba determinística de cada long; el bit i queda en 1 si ns[i] es primo. */
+    public BitSet testAll(long[] ns) {
+        long[] words = new long[(ns.length + 63) >>> 6];
+        long t0 = System.nanoTime();
+        LongAdder rejected = new LongAdder();
+        pool.invoke(new LongTask(ns, words, 0, ns.length, rejected));
+        BitSet result = BitSet.valueOf(words);
+        stats.record(ns.length, rejected.sum(), result.cardinality(), System.nanoTime() - t0);
+        return result;
+    }
+
+    /**
+     * Filtra los primos de un flujo (posiblemente infinito) manteniendo el orden.
+     * Los candidatos se agrupan en bloques de STREAM_CHUNK que se prueban en paralelo.
+     */
+    public Stream<BigInteger> filterPrimes(Stream<BigInteger> candidates, Algorithm alg, int rounds) {
+        Iterator<BigInteger> source = candidates.iterator();
+        Spliterator<BigInteger> sp = new Spliterators.AbstractSpliterator<BigInteger>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            private BigInteger[] chunk = new BigInteger[0];
+            private boolean[] prime = new boolean[0];
+            private int pos;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super BigInteger> action) {
+                while (true) {
+                    while (pos < chunk.length) {
+                        int i = pos++;
+                        if (prime[i]) {
+                            action.accept(chunk[i]);
+                            return true;
+                        }
+                    }
+                    if (!source.hasNext()) return false;
+                    BigInteger[] next = new BigInteger[STREAM_CHUNK];
+                    int size = 0;
+                    while (size < STREAM_CHUNK && source.hasNext()) next[size++] = source.next();
+                    chunk = size == STREAM_CHUNK ? next : Arrays.copyOf(next, size);
+                    prime = testAll(chunk, alg, rounds);
+                    pos = 0;
+                }
+            }
+        };
+        return StreamSupport.stream(sp, false).onClose(candidates::close);
+    }
+
+    // ============================
+    // Trabajo por candidato
+    // ============================
+
+    private static boolean testOne(BigInteger n, Algorithm alg, int rounds, LongAdder rejected) {
+        SmallPrimeFilter.Verdict v = SmallPrimeFilter.shared().check(n);
+        if (v == SmallPrimeFilter.Verdict.COMPOSITE) {
+            // los menores que 2 no cuentan como descarte del filtro (igual que rejected())
+            if (n.compareTo(BigInteger.TWO) >= 0) rejected.increment();
+            return false;
+        }
+        // primos de la tabla: el filtro ya decidió
+        if (v == SmallPrimeFilter.Verdict.PRIME) return true;
+        // las mismas pruebas que alg.test, sin repetir el filtro (ni sus contadores): se miden igual
+        return PrimalityAllTests.testUnfiltered(n, alg, rounds);
+    }
+
+    private static int count(boolean[] values) {
+        int c = 0;
+        for (boolean v : values) {
+            if (v) c++;
+        }
+        return c;
+    }
+
+    /** Prueba un tramo de BigInteger[] dividiéndolo a la mitad hasta hojas de BIG_LEAF. */
+    private static final class BigTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final BigInteger[] ns;
+        private final Algorithm alg;
+        private final int rounds;
+        private final boolean[] result;
+        private final int from;
+        private final int to;
+        private final LongAdder rejected;
+
+        BigTask(BigInteger[] ns, Algorithm alg, int rounds, boolean[] result, int from, int to, LongAdder rejected) {
+            this.ns = ns;
+            this.alg = alg;
+            this.rounds = rounds;
+            this.result = result;
+            this.from = from;
+            this.to = to;
+            this.rejected = rejected;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BIG_LEAF) {
+                for (int i = from; i < to; i++) {
+                    result[i] = testOne(ns[i], alg, rounds, rejected);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new BigTask(ns, alg, rounds, result, from, mid, rejected),
+                    new BigTask(ns, alg, rounds, result, mid, to, rejected));
+        }
+    }
+
+    /** Prueba un tramo de long[]; las hojas empiezan en múltiplos de 64 y escriben palabras propias. */
+    private static final class LongTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] ns;
+        private final long[] words;
+        private final int from;
+        private final int to;
+        private final LongAdder rejected;
+
+        LongTask(long[] ns, long[] words, int from, int to, LongAdder rejected) {
+            this.ns = ns;
+            this.words = words;
+            this.from = from;
+            this.to = to;
+            this.rejected = rejected;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LONG_LEAF) {
+                SmallPrimeFilter filter = SmallPrimeFilter.shared();
+                int rejectedHere = 0;
+                for (int i = from; i < to; i++) {
+                    long n = ns[i];
+                    SmallPrimeFilter.Verdict v = filter.check(n);
+                    boolean prime;
+                    if (v == SmallPrimeFilter.Verdict.COMPOSITE) {
+                        // los menores que 2 no cuentan como descarte del filtro (igual que rejected())
+                        if (n >= 2) rejectedHere++;
+                        prime = false;
+                    } else {
+                        prime = v == SmallPrimeFilter.Verdict.PRIME || LongPrimality.isPrime(n);
+                    }
+                    if (prime) words[i >>> 6] |= 1L << i;
+                }
+                rejected.add(rejectedHere);
+                return;
+            }
+            int mid = from + ((to - from) / 2 & ~63);
+            invokeAll(new LongTask(ns, words, from, mid, rejected),
+                    new LongTask(ns, words, mid, to, rejected));
+        }
+    }
+
+    // ============================
+    // Estadísticas
+    // ============================
+
+    /** Totales acumulados de todos los lotes procesados (seguro entre hilos). */
+    public static final class BatchStats {
+        private final LongAdder candidates = new LongAdder();
+        private final LongAdder rejectedByFilter = new LongAdder();
+        private final LongAdder primes = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        void record(long candidates, long rejected, long primes, long nanos) {
+            this.candidates.add(candidates);
+            this.rejectedByFilter.add(rejected);
+            this.primes.add(primes);
+            this.nanos.add(nanos);
+        }
+
+        public long candidates() {
+            return candidates.sum();
+        }
+
+        public long rejectedByFilter() {
+            return rejectedByFilter.sum();
+        }
+
+        public long primes() {
+            return primes.sum();
+        }
+
+        public long nanos() {
+            return nanos.sum();
+        }
+
+        /** Candidatos por segundo de tiempo de pared dentro de testAll. */
+        public double candidatesPerSecond() {
+            long t = nanos();
+            return t == 0 ? 0 : candidates() * 1e9 / t;
+        }
+
+        public void reset() {
+            candidates.reset();
+            rejectedByFilter.reset();
+            primes.reset();
+            nanos.reset();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("candidatos=%d primos=%d descartados_por_filtro=%d tiempo=%.1f ms throughput=%.0f cand/s",
+                    candidates(), primes(), rejectedByFilter(), nanos() / 1e6, candidatesPerSecond());
+        }
+    }
+}
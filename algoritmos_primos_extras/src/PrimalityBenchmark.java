@@ -0,0 +1,504 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * PrimalityBenchmark.java
+ *
+ * Benchmark de todas las pruebas de primalidad, por tamaño de entrada (bits) y por
+ * tipo de entrada (primo / compuesto difícil, producto de dos primos de la mitad de bits).
+ * Sigue el esquema de JMH sin depender de él (el proyecto no tiene build con dependencias):
+ * - Cada combinación se ejecuta en una JVM nueva (--forks, por defecto 1) para aislar el JIT;
+ *   con --forks 0 se ejecuta en el mismo proceso.
+ * - Iteraciones de calentamiento y de medición por tiempo (--warmup, --iterations, --time ms).
+ * - El reloj se lee una vez por tanda de operaciones, no por operación: la tanda se duplica
+ *   mientras dure menos de 1/100 de --time (y el tamaño alcanzado pasa a la iteración siguiente),
+ *   así que el costo de nanoTime no se suma a las operaciones cortas.
+ * - Se informa tiempo medio por operación (± desvío entre iteraciones) y bytes asignados por
+ *   operación (contador de asignación del hilo, equivalente a gc.alloc.rate.norm de -prof gc).
+ *   Solo cuenta el hilo que mide: por eso AKS se mide con el paso 5 secuencial.
+ * - --json archivo escribe los resultados con la estructura de JMH (benchmark, params,
+ *   primaryMetric, secondaryMetrics) para comparar entre versiones.
+ * Los métodos que no son factibles para un tamaño (los O(n), o int con n grande) se saltean.
+ * Con --scaling 1,2,4,8 mide en cambio el escalado de millerRabin con hilos para cada
+ * origen de testigos (WitnessSource), sobre un primo de 128 bits (o los --bits indicados).
+ *
+ * Uso: java -cp bin PrimalityBenchmark --bits 64,256 --include "mr|bpsw" --json bench.json
+ *      (AKS contra BPSW y Miller-Rabin: --include "aks|bailliePSW|millerRabin" --bits 14,32)
+ */
+public final class PrimalityBenchmark {
+
+    /** Tamaños por defecto; 14 bits es el que admiten los métodos O(n) más lentos. */
+    static final int[] DEFAULT_BITS = {14, 32, 64, 256, 1024, 4096};
+
+    /** Exponentes p con 2^p - 1 primo (para elegir la entrada de Lucas-Lehmer). */
+    private static final int[] MERSENNE_EXPONENTS = {
+        2, 3, 5, 7, 13, 17, 19, 31, 61, 89, 107, 127, 521, 607, 1279, 2203, 2281, 3217, 4253, 4423
+    };
+
+    /** El mayor n para el que i*i <= n no desborda en los métodos int. */
+    private static final long INT_LIMIT = 46340L * 46340L;
+
+    /** Evita que el JIT descarte los resultados (hace de Blackhole). */
+    static volatile int sink;
+
+    private PrimalityBenchmark() {
+    }
+
+    // ============================
+    // Casos
+    // ============================
+
+    /** Entrada de un caso: el mismo tamaño en sus tres representaciones. */
+    static final class Input {
+        final BigInteger n;
+        final int intValue;
+        final int exponent;
+
+        Input(BigInteger n, int intValue, int exponent) {
+            this.n = n;
+            this.intValue = intValue;
+            this.exponent = exponent;
+        }
+    }
+
+    /** Un método a medir y el mayor tamaño en bits en el que es factible. */
+    static final class Case {
+        final String name;
+        final int maxBits;
+        final Predicate<Input> op;
+
+        Case(String name, int maxBits, Predicate<Input> op) {
+            this.name = name;
+            this.maxBits = maxBits;
+            this.op = op;
+        }
+    }
+
+    static List<Case> cases(int rounds) {
+        List<Case> cases = new ArrayList<>();
+        cases.add(new Case("determinarNumeroPrimo1", 16, in -> PrimalityAllTests.determinarNumeroPrimo1(in.intValue)));
+        cases.add(new Case("determinarNumeroPrimo2", 16, in -> PrimalityAllTests.determinarNumeroPrimo2(in.intValue)));
+        cases.add(new Case("determinarNumeroPrimo3", 16, in -> PrimalityAllTests.determinarNumeroPrimo3(in.intValue)));
+        cases.add(new Case("determinarNumeroPrimo4", 32, in -> PrimalityAllTests.determinarNumeroPrimo4(in.intValue)));
+        cases.add(new Case("determinarNumeroPrimo5", 32, in -> PrimalityAllTests.determinarNumeroPrimo5(in.intValue)));
+        cases.add(new Case("trialWheel30", 47, in -> TrialDivision.isPrimeWheel30(in.n.longValue())));
+        cases.add(new Case("trialWheel210", 47, in -> TrialDivision.isPrimeWheel210(in.n.longValue())));
+        cases.add(new Case("trialTable", 47, in -> TrialDivision.isPrimeTable(in.n.longValue())));
+        cases.add(new Case("fermat", Integer.MAX_VALUE, in -> PrimalityAllTests.fermat(in.n, rounds)));
+        cases.add(new Case("millerRabin", Integer.MAX_VALUE, in -> PrimalityAllTests.millerRabin(in.n, rounds)));
+        cases.add(new Case("solovayStrassen", Integer.MAX_VALUE, in -> PrimalityAllTests.solovayStrassen(in.n, rounds)));
+        cases.add(new Case("lehmann", Integer.MAX_VALUE, in -> PrimalityAllTests.lehmann(in.n, rounds)));
+        cases.add(new Case("bailliePSW", Integer.MAX_VALUE, in -> PrimalityAllTests.bailliePSW(in.n)));
+        cases.add(new Case("aks", Aks.PRACTICAL_BITS, in -> aksSequential(in.n)));
+        cases.add(new Case("wilson", 24, in -> PrimalityAllTests.wilson(in.n)));
+        cases.add(new Case("lucasLehmer", Integer.MAX_VALUE, in -> PrimalityAllTests.lucasLehmer(in.exponent)));
+        return cases;
+    }
+
+    /**
+     * PrimalityAllTests.aks con el paso 5 en un solo hilo: la versión paralela asigna en los
+     * hilos del ForkJoinPool común, que el contador de B/op no ve.
+     */
+    private static boolean aksSequential(BigInteger n) {
+        if (n.compareTo(BigInteger.TWO) < 0) return false;
+        if (SmallPrimeFilter.shared().check(n) == SmallPrimeFilter.Verdict.COMPOSITE) return false;
+        return Aks.isPrime(n, false);
+    }
+
+    /**
+     * Entrada determinística de bits bits: el mayor primo por debajo de 2^bits, o un
+     * producto de dos primos de bits/2 (compuesto sin factores pequeños).
+     * La versión int se limita a INT_LIMIT; la de Lucas-Lehmer es un exponente p <= bits.
+     */
+    static Input createInput(int bits, boolean prime) {
+        BigInteger n;
+        if (bits <= 62) {
+            n = BigInteger.valueOf(smallInput(1L << bits, prime));
+        } else {
+            Random rnd = new Random(31L * bits + (prime ? 1 : 0));
+            if (prime) {
+                n = new BigInteger(bits, rnd).setBit(bits - 1).nextProbablePrime();
+            } else {
+                n = BigInteger.probablePrime(bits / 2, rnd).multiply(BigInteger.probablePrime(bits - bits / 2, rnd));
+            }
+        }
+        int intValue = (int) smallInput(Math.min(bits <= 62 ? 1L << bits : Long.MAX_VALUE, INT_LIMIT), prime);
+        return new Input(n, intValue, exponent(bits, prime));
+    }
+
+    private static long smallInput(long limit, boolean prime) {
+        if (prime) return previousPrime(limit);
+        long p = previousPrime((long) Math.sqrt((double) limit) + 1);
+        return p * previousPrime(p);
+    }
+
+    /** El mayor primo < x (x > 2). */
+    private static long previousPrime(long x) {
+        long n = x - 1;
+        while (!LongPrimality.isPrime(n)) n--;
+        return n;
+    }
+
+    /** Exponente de Mersenne primo <= bits, o el mayor primo p <= bits con 2^p - 1 compuesto. */
+    private static int exponent(int bits, boolean prime) {
+        if (prime) {
+            int best = 2;
+            for (int p : MERSENNE_EXPONENTS) {
+                if (p <= bits) best = p;
+            }
+            return best;
+        }
+        for (int p = bits; p > 2; p--) {
+            if (LongPrimality.isPrime(p) && !isMersenneExponent(p)) return p;
+        }
+        return 11; // 2^11 - 1 = 23 · 89
+    }
+
+    private static boolean isMersenneExponent(int p) {
+        for (int e : MERSENNE_EXPONENTS) {
+            if (e == p) return true;
+        }
+        return false;
+    }
+
+    // ============================
+    // Medición
+    // ============================
+
+    /** Resultado de una combinación método/bits/tipo (promediado entre forks). */
+    static final class Result {
+        final String name;
+        final int bits;
+        final String kind;
+        final double nanosPerOp;
+        final double nanosError;
+        final double bytesPerOp;
+        final long ops;
+
+        Result(String name, int bits, String kind, double nanosPerOp, double nanosError, double bytesPerOp, long ops) {
+            this.name = name;
+            this.bits = bits;
+            this.kind = kind;
+            this.nanosPerOp = nanosPerOp;
+            this.nanosError = nanosError;
+            this.bytesPerOp = bytesPerOp;
+            this.ops = ops;
+        }
+
+        /** Línea de intercambio entre la JVM hija y la principal. */
+        String encode() {
+            return String.format(Locale.ROOT, "RESULT %s %d %s %.3f %.3f %.3f %d",
+                    name, bits, kind, nanosPerOp, nanosError, bytesPerOp, ops);
+        }
+
+        static Result decode(String line) {
+            String[] f = line.split(" ");
+            return new Result(f[1], Integer.parseInt(f[2]), f[3], Double.parseDouble(f[4]),
+                    Double.parseDouble(f[5]), Double.parseDouble(f[6]), Long.parseLong(f[7]));
+        }
+    }
+
+    /**
+     * Ejecuta warmup + iterations iteraciones de al menos timeMillis cada una en este proceso.
+     * Cada lectura del reloj cubre una tanda de batch operaciones (ver el encabezado).
+     */
+    static Result measure(Case c, int bits, String kind, Input in, int warmup, int iterations, long timeMillis) {
+        com.sun.management.ThreadMXBean mx = threadBean();
+        long budget = timeMillis * 1_000_000L;
+        long batchTarget = Math.max(budget / 100, 1);
+        double[] perOp = new double[iterations];
+        long totalOps = 0;
+        long totalBytes = 0;
+        int batch = 1;
+        for (int it = -warmup; it < iterations; it++) {
+            long bytes0 = mx.getCurrentThreadAllocatedBytes();
+            long t0 = System.nanoTime();
+            long now = t0;
+            long ops = 0;
+            long elapsed;
+            int acc = 0;
+            do {
+                for (int k = 0; k < batch; k++) {
+                    if (c.op.test(in)) acc++;
+                }
+                ops += batch;
+                long previous = now;
+                now = System.nanoTime();
+                if (now - previous < batchTarget && batch < (1 << 30)) batch <<= 1;
+                elapsed = now - t0;
+            } while (elapsed < budget);
+            long bytes = mx.getCurrentThreadAllocatedBytes() - bytes0;
+            sink += acc;
+            if (it >= 0) {
+                perOp[it] = (double) elapsed / ops;
+                totalOps += ops;
+                totalBytes += bytes;
+            }
+        }
+        double mean = 0;
+        for (double v : perOp) mean += v;
+        mean /= iterations;
+        double var = 0;
+        for (double v : perOp) var += (v - mean) * (v - mean);
+        double error = iterations > 1 ? Math.sqrt(var / (iterations - 1)) : 0;
+        return new Result(c.name, bits, kind, mean, error, (double) totalBytes / totalOps, totalOps);
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (mx.isThreadAllocatedMemorySupported()) mx.setThreadAllocatedMemoryEnabled(true);
+        return mx;
+    }
+
+    /** Repite la medición en forks JVMs nuevas y promedia (forks == 0: en este proceso). */
+    static Result run(Options o, Case c, int bits, boolean prime, Input in) throws IOException, InterruptedException {
+        String kind = prime ? "prime" : "composite";
+        if (o.forks == 0) return measure(c, bits, kind, in, o.warmup, o.iterations, o.timeMillis);
+
+        double nanos = 0;
+        double error = 0;
+        double bytes = 0;
+        long ops = 0;
+        for (int f = 0; f < o.forks; f++) {
+            List<String> cmd = new ArrayList<>();
+            cmd.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+            cmd.add("-cp");
+            cmd.add(System.getProperty("java.class.path"));
+            cmd.add(PrimalityBenchmark.class.getName());
+            cmd.add("--child");
+            cmd.add(c.name);
+            cmd.add(Integer.toString(bits));
+            cmd.add(kind);
+            cmd.add(in.n.toString(16));
+            cmd.add(Integer.toString(in.intValue));
+            cmd.add(Integer.toString(in.exponent));
+            cmd.add(Integer.toString(o.rounds));
+            cmd.add(Integer.toString(o.warmup));
+            cmd.add(Integer.toString(o.iterations));
+            cmd.add(Long.toString(o.timeMillis));
+            Process p = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+            Result r = null;
+            try (BufferedReader out = new BufferedReader(new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = out.readLine()) != null) {
+                    if (line.startsWith("RESULT ")) r = Result.decode(line);
+                }
+            }
+            int exit = p.waitFor();
+            if (r == null) throw new IllegalStateException("El fork de " + c.name + " terminó sin resultado (código " + exit + ")");
+            nanos += r.nanosPerOp;
+            error += r.nanosError;
+            bytes += r.bytesPerOp;
+            ops += r.ops;
+        }
+        return new Result(c.name, bits, kind, nanos / o.forks, error / o.forks, bytes / o.forks, ops);
+    }
+
+    // ============================
+    // Escalado con hilos
+    // ============================
+
+    /**
+     * Para cada origen de testigos y cada cantidad de hilos, todos los hilos ejecutan
+     * millerRabin sobre el mismo primo durante --time ms. "escala" es ops/s dividido por
+     * las ops/s de la primera cantidad de hilos (por hilo): lineal si coincide con los hilos.
+     */
+    static void scaling(Options o) throws InterruptedException {
+        WitnessSource previous = PrimalityAllTests.witnessSource();
+        int[] bitsList = o.bitsGiven ? o.bits : new int[]{128};
+        WitnessSource[] sources = {WitnessSource.threadLocal(), WitnessSource.seeded(42), WitnessSource.secure()};
+        System.out.printf("%-14s %6s %6s %16s %8s%n", "testigos", "bits", "hilos", "ops/s", "escala");
+        try {
+            for (WitnessSource source : sources) {
+                PrimalityAllTests.setWitnessSource(source);
+                for (int bits : bitsList) {
+                    BigInteger n = createInput(bits, true).n;
+                    for (int w = 0; w < o.warmup; w++) runThreads(o.scaling[o.scaling.length - 1], n, o);
+                    double perThread = 0;
+                    for (int threads : o.scaling) {
+                        double ops = runThreads(threads, n, o);
+                        if (perThread == 0) perThread = ops / threads;
+                        System.out.printf(Locale.ROOT, "%-14s %6d %6d %16.0f %8.2f%n",
+                                source, bits, threads, ops, ops / perThread);
+                    }
+                }
+            }
+        } finally {
+            PrimalityAllTests.setWitnessSource(previous);
+        }
+    }
+
+    /** Operaciones por segundo de threads hilos que ejecutan millerRabin(n) a la vez. */
+    private static double runThreads(int threads, BigInteger n, Options o) throws InterruptedException {
+        long budget = o.timeMillis * 1_000_000L;
+        long[] ops = new long[threads];
+        long[] end = new long[1];
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long count = 0;
+                int acc = 0;
+                while (System.nanoTime() < end[0]) {
+                    if (PrimalityAllTests.millerRabin(n, o.rounds)) acc++;
+                    count++;
+                }
+                ops[id] = count;
+                sink += acc;
+            });
+            workers[t].start();
+        }
+        // todos los hilos terminan en el mismo instante (el mismo intervalo de pared)
+        end[0] = System.nanoTime() + budget;
+        start.countDown();
+        long total = 0;
+        for (int t = 0; t < threads; t++) {
+            workers[t].join();
+            total += ops[t];
+        }
+        return total * 1e9 / budget;
+    }
+
+    // ============================
+    // Línea de comandos
+    // ============================
+
+    static final class Options {
+        int[] bits = DEFAULT_BITS;
+        Pattern include = Pattern.compile(".*");
+        boolean primes = true;
+        boolean composites = true;
+        int rounds = 5;
+        int warmup = 3;
+        int iterations = 5;
+        long timeMillis = 500;
+        int forks = 1;
+        String json;
+        boolean bitsGiven;
+        int[] scaling;
+    }
+
+    static Options parse(String[] args) {
+        Options o = new Options();
+        for (int i = 0; i < args.length; i++) {
+            String a = args[i];
+            String v = i + 1 < args.length ? args[i + 1] : null;
+            if (v == null) throw new IllegalArgumentException("Falta el valor de " + a);
+            switch (a) {
+                case "--bits":
+                    String[] parts = v.split(",");
+                    o.bits = new int[parts.length];
+                    for (int k = 0; k < parts.length; k++) o.bits[k] = Integer.parseInt(parts[k].trim());
+                    o.bitsGiven = true;
+                    break;
+                case "--include": o.include = Pattern.compile(v); break;
+                case "--kind":
+                    o.primes = !v.equals("composite");
+                    o.composites = !v.equals("prime");
+                    break;
+                case "--rounds": o.rounds = Integer.parseInt(v); break;
+                case "--warmup": o.warmup = Integer.parseInt(v); break;
+                case "--iterations": o.iterations = Integer.parseInt(v); break;
+                case "--time": o.timeMillis = Long.parseLong(v); break;
+                case "--forks": o.forks = Integer.parseInt(v); break;
+                case "--json": o.json = v; break;
+                case "--scaling":
+                    String[] counts = v.split(",");
+                    o.scaling = new int[counts.length];
+                    for (int k = 0; k < counts.length; k++) o.scaling[k] = Integer.parseInt(counts[k].trim());
+                    break;
+                default: throw new IllegalArgumentException("Opción desconocida: " + a);
+            }
+            i++;
+        }
+        if (o.iterations < 1) throw new IllegalArgumentException("--iterations debe ser >= 1");
+        return o;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--child")) {
+            child(args);
+            return;
+        }
+        Options o = parse(args);
+        if (o.scaling != null) {
+            scaling(o);
+            return;
+        }
+        List<Result> results = new ArrayList<>();
+        Map<String, Input> inputs = new HashMap<>();
+        System.out.printf("%-24s %6s %-10s %16s %14s %14s%n", "Benchmark", "bits", "tipo", "ns/op", "error ns/op", "B/op");
+        for (Case c : cases(o.rounds)) {
+            if (!o.include.matcher(c.name).find()) continue;
+            for (int bits : o.bits) {
+                if (bits > c.maxBits) continue;
+                for (boolean prime : new boolean[]{true, false}) {
+                    if (prime ? !o.primes : !o.composites) continue;
+                    Input in = inputs.computeIfAbsent(bits + (prime ? "p" : "c"), k -> createInput(bits, prime));
+                    Result r = run(o, c, bits, prime, in);
+                    results.add(r);
+                    System.out.printf(Locale.ROOT, "%-24s %6d %-10s %16.1f %14.1f %14.1f%n",
+                            r.name, r.bits, r.kind, r.nanosPerOp, r.nanosError, r.bytesPerOp);
+                }
+            }
+        }
+        if (o.json != null) {
+            Files.write(Paths.get(o.json), toJson(o, results).getBytes(StandardCharsets.UTF_8));
+            System.out.println("JSON: " + o.json);
+        }
+    }
+
+    /** Proceso hijo: --child nombre bits tipo nHex int exp rounds warmup iterations time. */
+    private static void child(String[] a) {
+        int rounds = Integer.parseInt(a[7]);
+        Input in = new Input(new BigInteger(a[4], 16), Integer.parseInt(a[5]), Integer.parseInt(a[6]));
+        for (Case c : cases(rounds)) {
+            if (c.name.equals(a[1])) {
+                Result r = measure(c, Integer.parseInt(a[2]), a[3], in,
+                        Integer.parseInt(a[8]), Integer.parseInt(a[9]), Long.parseLong(a[10]));
+                System.out.println(r.encode());
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Benchmark desconocido: " + a[1]);
+    }
+
+    /** Resultados con la estructura del JSON de JMH (-rf json). */
+    static String toJson(Options o, List<Result> results) {
+        StringBuilder sb = new StringBuilder("[\n");
+        for (int i = 0; i < results.size(); i++) {
+            Result r = results.get(i);
+            sb.append(String.format(Locale.ROOT,
+                    "  {\"benchmark\": \"PrimalityAllTests.%s\", \"mode\": \"avgt\", \"forks\": %d, "
+                    + "\"warmupIterations\": %d, \"measurementIterations\": %d, \"measurementTimeMs\": %d, "
+                    + "\"params\": {\"bits\": \"%d\", \"kind\": \"%s\", \"rounds\": \"%d\"}, "
+                    + "\"primaryMetric\": {\"score\": %.3f, \"scoreError\": %.3f, \"scoreUnit\": \"ns/op\"}, "
+                    + "\"secondaryMetrics\": {\"gc.alloc.rate.norm\": {\"score\": %.3f, \"scoreUnit\": \"B/op\"}}, "
+                    + "\"operations\": %d}%s%n",
+                    r.name, o.forks, o.warmup, o.iterations, o.timeMillis, r.bits, r.kind, o.rounds,
+                    r.nanosPerOp, r.nanosError, r.bytesPerOp, r.ops, i + 1 < results.size() ? "," : ""));
+        }
+        return sb.append("]\n").toString();
+    }
+}
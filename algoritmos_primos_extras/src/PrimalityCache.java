@@ -0,0 +1,343 @@
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * PrimalityCache.java
+ *
+ * Caché opcional de resultados de primalidad, delante de Algorithm.test:
+ *   cache.test(n, Algorithm.MILLER_RABIN, 20)
+ * - Cada resultado guarda el algoritmo y su confianza (Algorithm.confidenceBits). Un resultado
+ *   en caché sirve para otra consulta si es "compuesto" (siempre exacto) o si su confianza es
+ *   al menos la pedida; si no, se recalcula y se reemplaza. Un "primo" de Fermat o de Lehmann
+ *   solo sirve para consultas del mismo algoritmo: sus bits son nominales (hay números de
+ *   Carmichael que pasan cualquier cantidad de rondas).
+ * - Para n < 2^63, Miller-Rabin (también el adaptativo), Baillie-PSW y AKS se resuelven con
+ *   LongPrimality; la entrada queda registrada como Miller-Rabin (exacto).
+ * - BigInteger: LRU acotada por cantidad de entradas y por bytes aproximados, dividida en
+ *   franjas (cada una un LinkedHashMap en orden de acceso con su propio lock).
+ * - n < 2^63: tabla de direccionamiento abierto sobre long[] (sin boxing), asociativa por
+ *   conjuntos de 8 posiciones; al llenarse un conjunto se desaloja con el algoritmo del reloj
+ *   (bit de referencia), una aproximación de LRU.
+ * - hits(), misses() y evictions() cuentan ambos lados.
+ */
+public final class PrimalityCache {
+
+    private static final int STRIPES = 16;
+    /** Posiciones por conjunto en la tabla long. */
+    private static final int WAYS = 8;
+    /** Bytes estimados por entrada BigInteger además de la magnitud (nodo, objetos, referencias). */
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private static final int VALID = 1 << 31;
+    private static final int REFERENCED = 1 << 30;
+    private static final int PRIME = 1 << 29;
+    private static final int EXACT_CODE = 255;
+
+    private final BigStripe[] bigStripes = new BigStripe[STRIPES];
+    private final LongStripe[] longStripes = new LongStripe[STRIPES];
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * maxBigEntries / maxBigBytes acotan la parte BigInteger; longEntries es la capacidad
+     * de la tabla long (se redondea a conjuntos completos).
+     */
+    public PrimalityCache(int maxBigEntries, long maxBigBytes, int longEntries) {
+        if (maxBigEntries < 1 || maxBigBytes < 1 || longEntries < 1) {
+            throw new IllegalArgumentException("los límites de la caché deben ser >= 1");
+        }
+        int entriesPerStripe = Math.max(1, maxBigEntries / STRIPES);
+        long bytesPerStripe = Math.max(1, maxBigBytes / STRIPES);
+        int setsPerStripe = Integer.highestOneBit(Math.max(1, longEntries / (STRIPES * WAYS)) * 2 - 1);
+        for (int i = 0; i < STRIPES; i++) {
+            bigStripes[i] = new BigStripe(entriesPerStripe, bytesPerStripe);
+            longStripes[i] = new LongStripe(setsPerStripe);
+        }
+    }
+
+    /** Caché con maxEntries entradas de cada tipo y sin límite práctico de bytes. */
+    public PrimalityCache(int maxEntries) {
+        this(maxEntries, Long.MAX_VALUE, maxEntries);
+    }
+
+    /** Resultado guardado: primo/compuesto, con qué algoritmo y con qué confianza. */
+    public static final class Result {
+        private final boolean prime;
+        private final Algorithm algorithm;
+        private final int confidenceBits;
+
+        Result(boolean prime, Algorithm algorithm, int confidenceBits) {
+            this.prime = prime;
+            this.algorithm = algorithm;
+            this.confidenceBits = prime ? confidenceBits : Algorithm.EXACT;
+        }
+
+        public boolean prime() {
+            return prime;
+        }
+
+        public Algorithm algorithm() {
+            return algorithm;
+        }
+
+        /** Bits de confianza (Algorithm.EXACT si el resultado es seguro). */
+        public int confidenceBits() {
+            return confidenceBits;
+        }
+
+        boolean satisfies(Algorithm alg, int requiredBits) {
+            return reusable(prime, algorithm, confidenceBits, alg, requiredBits);
+        }
+
+        @Override
+        public String toString() {
+            return (prime ? "primo" : "compuesto") + " (" + algorithm.displayName() + ", "
+                    + (confidenceBits == Algorithm.EXACT ? "exacto" : confidenceBits + " bits") + ")";
+        }
+    }
+
+    // ============================
+    // API
+    // ============================
+
+    /** alg.test(n, rounds), usando o completando la caché. */
+    public boolean test(BigInteger n, Algorithm alg, int rounds) {
+        if (n.signum() >= 0 && n.bitLength() <= 63) return test(n.longValue(), alg, rounds);
+        int required = alg.confidenceBits(n, rounds);
+        BigStripe stripe = bigStripes[spread(n.hashCode()) & (STRIPES - 1)];
+        Result cached = stripe.get(n);
+        if (cached != null && cached.satisfies(alg, required)) {
+            hits.increment();
+            return cached.prime;
+        }
+        misses.increment();
+        boolean prime = alg.test(n, rounds);
+        evictions.add(stripe.put(n, new Result(prime, alg, required)));
+        return prime;
+    }
+
+    /** Igual que test(BigInteger, ...) para n >= 0, sin crear objetos en un acierto. */
+    public boolean test(long n, Algorithm alg, int rounds) {
+        if (n < 0) throw new IllegalArgumentException("n debe ser >= 0");
+        // Miller-Rabin, Baillie-PSW y AKS son exactos en long y pueden calcularse sin BigInteger
+        boolean exactLong = alg == Algorithm.MILLER_RABIN || alg == Algorithm.MILLER_RABIN_ADAPTIVE
+                || alg == Algorithm.BAILLIE_PSW || alg == Algorithm.AKS;
+        int required = exactLong ? Algorithm.EXACT : alg.confidenceBits(BigInteger.ZERO, rounds);
+        LongStripe stripe = longStripes[spread(Long.hashCode(n)) & (STRIPES - 1)];
+        int meta = stripe.get(n);
+        if (meta != 0 && reusable((meta & PRIME) != 0, algorithm(meta), confidence(meta), alg, required)) {
+            hits.increment();
+            return (meta & PRIME) != 0;
+        }
+        misses.increment();
+        boolean prime = exactLong ? LongPrimality.isPrime(n) : alg.test(BigInteger.valueOf(n), rounds);
+        int code = required == Algorithm.EXACT || !prime ? EXACT_CODE : Math.min(required, EXACT_CODE - 1);
+        // se registra el algoritmo que dio el resultado (LongPrimality es Miller-Rabin determinístico)
+        Algorithm producer = exactLong ? Algorithm.MILLER_RABIN : alg;
+        evictions.add(stripe.put(n, VALID | (prime ? PRIME : 0) | producer.ordinal() << 8 | code));
+        return prime;
+    }
+
+    /** Resultado en caché para n, o null (no cuenta como acierto ni fallo). */
+    public Result lookup(BigInteger n) {
+        if (n.signum() >= 0 && n.bitLength() <= 63) {
+            long v = n.longValue();
+            int meta = longStripes[spread(Long.hashCode(v)) & (STRIPES - 1)].get(v);
+            if (meta == 0) return null;
+            return new Result((meta & PRIME) != 0, algorithm(meta), confidence(meta));
+        }
+        return bigStripes[spread(n.hashCode()) & (STRIPES - 1)].get(n);
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    /** Entradas guardadas (BigInteger + long). */
+    public long size() {
+        long size = 0;
+        for (int i = 0; i < STRIPES; i++) size += bigStripes[i].size() + longStripes[i].size();
+        return size;
+    }
+
+    public void clear() {
+        for (int i = 0; i < STRIPES; i++) {
+            bigStripes[i].clear();
+            longStripes[i].clear();
+        }
+    }
+
+    @Override
+    public String toString() {
+        long h = hits();
+        long total = h + misses();
+        return String.format("entradas=%d aciertos=%d fallos=%d desalojos=%d tasa=%.1f%%",
+                size(), h, misses(), evictions(), total == 0 ? 0.0 : 100.0 * h / total);
+    }
+
+    /**
+     * true si un resultado guardado (prime, stored, confidence) responde a una consulta de alg
+     * que pide requiredBits: los compuestos siempre; un primo de Fermat o de Lehmann solo al
+     * mismo algoritmo (confianza nominal, ver Algorithm.confidenceBits).
+     */
+    private static boolean reusable(boolean prime, Algorithm stored, int confidence, Algorithm alg, int requiredBits) {
+        boolean nominal = stored == Algorithm.FERMAT || stored == Algorithm.LEHMANN;
+        if (prime && nominal && alg != stored) return false;
+        return confidence >= requiredBits;
+    }
+
+    private static final Algorithm[] ALGORITHMS = Algorithm.values();
+
+    private static Algorithm algorithm(int meta) {
+        return ALGORITHMS[meta >>> 8 & 0xFF];
+    }
+
+    private static int confidence(int meta) {
+        int code = meta & 0xFF;
+        return code == EXACT_CODE ? Algorithm.EXACT : code;
+    }
+
+    private static int spread(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // ============================
+    // Franja BigInteger (LRU)
+    // ============================
+
+    private static final class BigStripe {
+        private final int maxEntries;
+        private final long maxBytes;
+        private final LinkedHashMap<BigInteger, Result> map = new LinkedHashMap<>(16, 0.75f, true);
+        private long bytes;
+
+        BigStripe(int maxEntries, long maxBytes) {
+            this.maxEntries = maxEntries;
+            this.maxBytes = maxBytes;
+        }
+
+        synchronized Result get(BigInteger n) {
+            return map.get(n);
+        }
+
+        /** Inserta o reemplaza; devuelve cuántas entradas se desalojaron. */
+        synchronized int put(BigInteger n, Result r) {
+            if (map.put(n, r) == null) bytes += cost(n);
+            int evicted = 0;
+            Iterator<Map.Entry<BigInteger, Result>> it = map.entrySet().iterator();
+            while ((map.size() > maxEntries || bytes > maxBytes) && map.size() > 1) {
+                Map.Entry<BigInteger, Result> eldest = it.next();
+                bytes -= cost(eldest.getKey());
+                it.remove();
+                evicted++;
+            }
+            return evicted;
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+
+        synchronized void clear() {
+            map.clear();
+            bytes = 0;
+        }
+
+        private static long cost(BigInteger n) {
+            return ENTRY_OVERHEAD + ((n.bitLength() + 31) >>> 5) * 4L;
+        }
+    }
+
+    // ============================
+    // Franja long (asociativa por conjuntos, reloj)
+    // ============================
+
+    private static final class LongStripe {
+        private final long[] keys;
+        /** VALID | REFERENCED | PRIME | algoritmo << 8 | confianza (0 = vacío). */
+        private final int[] meta;
+        /** Manecilla del reloj de cada conjunto. */
+        private final byte[] hand;
+        private final int setMask;
+        private int size;
+
+        LongStripe(int sets) {
+            this.keys = new long[sets * WAYS];
+            this.meta = new int[sets * WAYS];
+            this.hand = new byte[sets];
+            this.setMask = sets - 1;
+        }
+
+        /** meta de n (sin REFERENCED) o 0 si no está. */
+        synchronized int get(long n) {
+            int base = setOf(n) * WAYS;
+            for (int i = base; i < base + WAYS; i++) {
+                if (meta[i] != 0 && keys[i] == n) {
+                    meta[i] |= REFERENCED;
+                    return meta[i] & ~REFERENCED;
+                }
+            }
+            return 0;
+        }
+
+        /** Inserta o reemplaza; devuelve 1 si desalojó otra entrada. */
+        synchronized int put(long n, int value) {
+            int set = setOf(n);
+            int base = set * WAYS;
+            int free = -1;
+            for (int i = base; i < base + WAYS; i++) {
+                if (meta[i] == 0) {
+                    if (free < 0) free = i;
+                } else if (keys[i] == n) {
+                    meta[i] = value | REFERENCED;
+                    return 0;
+                }
+            }
+            if (free >= 0) {
+                keys[free] = n;
+                meta[free] = value;
+                size++;
+                return 0;
+            }
+            // reloj: la primera entrada sin referencia desde la última vuelta
+            int h = hand[set];
+            while ((meta[base + h] & REFERENCED) != 0) {
+                meta[base + h] &= ~REFERENCED;
+                h = (h + 1) & (WAYS - 1);
+            }
+            keys[base + h] = n;
+            meta[base + h] = value;
+            hand[set] = (byte) ((h + 1) & (WAYS - 1));
+            return 1;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized void clear() {
+            Arrays.fill(meta, 0);
+            size = 0;
+        }
+
+        private int setOf(long n) {
+            long h = n * 0x9E3779B97F4A7C15L;
+            return (int) (h >>> 40) & setMask;
+        }
+    }
+}
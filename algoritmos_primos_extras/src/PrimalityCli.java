@@ -0,0 +1,262 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * PrimalityCli.java
+ *
+ * Modo no interactivo para scripts y pipelines (se usa cuando main recibe argumentos):
+ *   --alg=mr --rounds=20 --in=candidatos.txt --out=resultados.csv [--threads=N] [--radix=16]
+ * - Lee un número por línea (decimal, o hexadecimal con prefijo 0x o con --radix=16)
+ *   desde un archivo o desde stdin (--in=- o sin --in), con un lector con buffer grande.
+ * - Las líneas se agrupan en bloques que se prueban en un pool de hilos; como máximo hay
+ *   2·threads bloques en vuelo, así la memoria es constante aunque la entrada ocupe GB.
+ * - Escribe un CSV "numero,resultado" en el mismo orden de la entrada (archivo o stdout).
+ *   resultado es primo, compuesto, invalido (línea que no es un número) o error (la prueba
+ *   no admite ese n, p. ej. Wilson con n >= 2^63; el resto de la entrada se procesa igual).
+ *   Se ignoran las líneas vacías y las que empiezan con #.
+ * - --cache=N guarda los resultados en una PrimalityCache de N entradas (entradas repetidas).
+ * - --metrics=true activa PrimalityMetrics e imprime su tabla en stderr al final.
+ * - Al terminar imprime un resumen en stderr.
+ */
+public final class PrimalityCli {
+
+    /** Líneas por bloque de trabajo. */
+    private static final int BLOCK_LINES = 256;
+    private static final int IO_BUFFER = 1 << 20;
+
+    private PrimalityCli() {
+    }
+
+    static final class Options {
+        Algorithm alg = Algorithm.MILLER_RABIN;
+        int rounds = PrimalityBatch.DEFAULT_ROUNDS;
+        String in = "-";
+        String out = "-";
+        int threads = Runtime.getRuntime().availableProcessors();
+        int radix = 10;
+        /** null: sin caché. */
+        PrimalityCache cache;
+        boolean metrics;
+    }
+
+    /** Ejecuta el modo no interactivo; devuelve el código de salida del proceso. */
+    public static int run(String[] args) {
+        Options o;
+        try {
+            o = parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            usage();
+            return 2;
+        }
+        if (o.metrics) PrimalityMetrics.enable();
+        try {
+            long t0 = System.nanoTime();
+            long[] counts = process(o);
+            System.err.printf("%s: %d números, %d primos, %d inválidos o con error en %.1f ms%n",
+                    o.alg.displayName(), counts[0], counts[1], counts[2], (System.nanoTime() - t0) / 1e6);
+            if (o.cache != null) System.err.println("Caché: " + o.cache);
+            if (o.metrics) System.err.print(PrimalityMetrics.snapshot());
+            return counts[2] == 0 ? 0 : 1;
+        } catch (IOException e) {
+            System.err.println("Error de E/S: " + e.getMessage());
+            return 3;
+        }
+    }
+
+    static Options parse(String[] args) {
+        Options o = new Options();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) throw new IllegalArgumentException("Argumento inválido: " + arg);
+            String key = arg.substring(2, eq);
+            String value = arg.substring(eq + 1);
+            switch (key) {
+                case "alg": o.alg = Algorithm.fromCode(value); break;
+                case "rounds": o.rounds = positive(key, value); break;
+                case "in": o.in = value; break;
+                case "out": o.out = value; break;
+                case "threads": o.threads = positive(key, value); break;
+                case "radix": o.radix = positive(key, value); break;
+                case "cache": o.cache = new PrimalityCache(positive(key, value)); break;
+                case "metrics": o.metrics = Boolean.parseBoolean(value); break;
+                default: throw new IllegalArgumentException("Opción desconocida: --" + key);
+            }
+        }
+        if (o.radix < Character.MIN_RADIX || o.radix > Character.MAX_RADIX) {
+            throw new IllegalArgumentException("--radix fuera de rango: " + o.radix);
+        }
+        return o;
+    }
+
+    private static int positive(String key, String value) {
+        int v;
+        try {
+            v = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + key + " debe ser un entero: " + value);
+        }
+        if (v < 1) throw new IllegalArgumentException("--" + key + " debe ser >= 1");
+        return v;
+    }
+
+    static void usage() {
+        System.err.println("Uso: --alg=fermat|mr|mra|ss|lehmann|bpsw|aks|wilson [--rounds=20] [--in=archivo|-]"
+                + " [--out=archivo|-] [--threads=N] [--radix=16] [--cache=entradas]"
+                + " [--metrics=true]");
+    }
+
+    // ============================
+    // Procesamiento por bloques
+    // ============================
+
+    /** Resultado de un bloque: una línea CSV por número y los contadores del bloque. */
+    private static final class Block {
+        final String csv;
+        final int numbers;
+        final int primes;
+        final int invalid;
+
+        Block(String csv, int numbers, int primes, int invalid) {
+            this.csv = csv;
+            this.numbers = numbers;
+            this.primes = primes;
+            this.invalid = invalid;
+        }
+    }
+
+    /** Devuelve {números, primos, inválidos o con error}. */
+    static long[] process(Options o) throws IOException {
+        long[] counts = new long[3];
+        ExecutorService pool = Executors.newFixedThreadPool(o.threads);
+        ArrayDeque<Future<Block>> window = new ArrayDeque<>();
+        try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(open(o.in), StandardCharsets.UTF_8), IO_BUFFER);
+             Writer writer = new BufferedWriter(
+                    new OutputStreamWriter(create(o.out), StandardCharsets.UTF_8), IO_BUFFER)) {
+            writer.write("numero,resultado\n");
+            String[] lines = new String[BLOCK_LINES];
+            int size = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                lines[size++] = line;
+                if (size == BLOCK_LINES) {
+                    submit(pool, window, lines, size, o);
+                    lines = new String[BLOCK_LINES];
+                    size = 0;
+                    while (window.size() >= 2 * o.threads) write(window.pollFirst(), writer, counts);
+                }
+            }
+            if (size > 0) submit(pool, window, Arrays.copyOf(lines, size), size, o);
+            while (!window.isEmpty()) write(window.pollFirst(), writer, counts);
+        } finally {
+            for (Future<Block> f : window) f.cancel(true);
+            pool.shutdownNow();
+        }
+        return counts;
+    }
+
+    private static void submit(ExecutorService pool, ArrayDeque<Future<Block>> window,
+                               String[] lines, int size, Options o) {
+        window.addLast(pool.submit(() -> testBlock(lines, size, o)));
+    }
+
+    private static Block testBlock(String[] lines, int size, Options o) {
+        StringBuilder csv = new StringBuilder(size * 32);
+        int primes = 0;
+        int invalid = 0;
+        for (int i = 0; i < size; i++) {
+            String text = lines[i];
+            BigInteger n = parseNumber(text, o.radix);
+            String result;
+            if (n == null) {
+                invalid++;
+                result = "invalido";
+            } else {
+                try {
+                    if (o.cache != null ? o.cache.test(n, o.alg, o.rounds) : o.alg.test(n, o.rounds)) {
+                        primes++;
+                        result = "primo";
+                    } else {
+                        result = "compuesto";
+                    }
+                } catch (RuntimeException e) {
+                    // se cuenta con los inválidos (código de salida 1)
+                    invalid++;
+                    result = "error";
+                }
+            }
+            csv.append(text).append(',').append(result).append('\n');
+        }
+        return new Block(csv.toString(), size, primes, invalid);
+    }
+
+    /** Decimal, hexadecimal con prefijo 0x, o la base indicada; null si no es un número. */
+    static BigInteger parseNumber(String text, int radix) {
+        try {
+            if (text.startsWith("0x") || text.startsWith("0X")) return new BigInteger(text.substring(2), 16);
+            return new BigInteger(text, radix);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void write(Future<Block> f, Writer writer, long[] counts) throws IOException {
+        Block b;
+        try {
+            b = f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Procesamiento interrumpido");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+        writer.write(b.csv);
+        counts[0] += b.numbers;
+        counts[1] += b.primes;
+        counts[2] += b.invalid;
+    }
+
+    private static InputStream open(String path) throws IOException {
+        return path.equals("-") ? System.in : Files.newInputStream(Paths.get(path));
+    }
+
+    private static OutputStream create(String path) throws IOException {
+        if (!path.equals("-")) return Files.newOutputStream(Paths.get(path));
+        // stdout no se cierra al terminar
+        return new FilterOutputStream(System.out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+    }
+}
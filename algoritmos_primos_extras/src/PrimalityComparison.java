@@ -0,0 +1,281 @@
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * PrimalityComparison.java
+ *
+ * Comparación de todos los algoritmos de PrimalityAllTests sobre un corpus generado, en lugar
+ * de la medición de una sola ejecución de runAllTests:
+ * - Para cada tamaño (bits) se genera un corpus reproducible (--seed) con primos, productos
+ *   de dos primos de la mitad de bits (compuestos difíciles) y números impares al azar.
+ * - Por algoritmo y tamaño: --warmup pasadas sin medir y --reps pasadas medidas, tomando el
+ *   tiempo de cada llamada; se informa mínimo, mediana, p99 y llamadas por segundo.
+ * - Presupuesto de tiempo por algoritmo (--budget ms, sumando todos los tamaños): al agotarse
+ *   se deja de medir ese algoritmo y se marca "presupuesto" en los tamaños restantes. Los
+ *   tamaños van de menor a mayor, así que tampoco se empieza un tamaño si el anterior ya costó
+ *   más que lo que queda. Los tamaños no factibles (PrimalityBenchmark.Case.maxBits) se omiten.
+ * - Salida: tabla en consola y, opcionalmente, --csv archivo y --json archivo.
+ * A diferencia de PrimalityBenchmark (un número fijo por tamaño, en JVMs separadas), mide la
+ * distribución de tiempos sobre muchas entradas distintas en un único proceso.
+ *
+ * Uso: java -cp bin PrimalityComparison --bits 16,64,256 --reps 5 --budget 2000 --csv comp.csv
+ */
+public final class PrimalityComparison {
+
+    static final int[] DEFAULT_BITS = {8, 16, 24, 31, 64, 128, 256, 512, 1024};
+
+    private PrimalityComparison() {
+    }
+
+    /** Estadísticas de un algoritmo para un tamaño. */
+    static final class Stats {
+        final String name;
+        final int bits;
+        final int samples;
+        final long minNanos;
+        final long medianNanos;
+        final long p99Nanos;
+        final double meanNanos;
+        final double opsPerSecond;
+        /** "ok", "no factible" o "presupuesto". */
+        final String status;
+
+        Stats(String name, int bits, long[] nanos, int count, String status) {
+            this.name = name;
+            this.bits = bits;
+            this.samples = count;
+            this.status = status;
+            long[] sorted = Arrays.copyOf(nanos, count);
+            Arrays.sort(sorted);
+            long total = 0;
+            for (long v : sorted) total += v;
+            this.minNanos = count == 0 ? 0 : sorted[0];
+            this.medianNanos = count == 0 ? 0 : sorted[(count - 1) / 2];
+            // rango más cercano: el menor valor con al menos el 99% de las muestras por debajo
+            this.p99Nanos = count == 0 ? 0 : sorted[Math.max(0, (int) Math.ceil(0.99 * count) - 1)];
+            this.meanNanos = count == 0 ? 0 : (double) total / count;
+            this.opsPerSecond = total == 0 ? 0 : count * 1e9 / total;
+        }
+
+        boolean measured() {
+            return samples > 0;
+        }
+    }
+
+    // ============================
+    // Corpus
+    // ============================
+
+    /**
+     * corpus entradas de bits bits (bits >= 4): primos, semiprimos y aleatorios impares por
+     * partes iguales. Los métodos int reciben el mismo n si cabe en 31 bits; si no, el valor
+     * int de PrimalityBenchmark.createInput (sus tamaños máximos los excluyen igual).
+     */
+    static List<PrimalityBenchmark.Input> corpus(int bits, int size, long seed) {
+        if (bits < 4) throw new IllegalArgumentException("bits debe ser >= 4: " + bits);
+        Random rnd = new Random(seed * 1_000_003L + bits);
+        PrimalityBenchmark.Input primeTemplate = PrimalityBenchmark.createInput(bits, true);
+        PrimalityBenchmark.Input compositeTemplate = PrimalityBenchmark.createInput(bits, false);
+        List<PrimalityBenchmark.Input> inputs = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            BigInteger n;
+            boolean prime = i % 3 == 0;
+            switch (i % 3) {
+                case 0:
+                    n = BigInteger.probablePrime(bits, rnd);
+                    break;
+                case 1:
+                    n = semiprime(bits, rnd);
+                    break;
+                default:
+                    n = new BigInteger(bits, rnd).setBit(bits - 1).setBit(0);
+                    break;
+            }
+            PrimalityBenchmark.Input template = prime ? primeTemplate : compositeTemplate;
+            int intValue = bits <= 31 ? n.intValue() : template.intValue;
+            inputs.add(new PrimalityBenchmark.Input(n, intValue, template.exponent));
+        }
+        return inputs;
+    }
+
+    /** Producto de dos primos de bits/2 y bits - bits/2 bits con exactamente bits bits. */
+    private static BigInteger semiprime(int bits, Random rnd) {
+        while (true) {
+            BigInteger n = BigInteger.probablePrime(bits / 2, rnd)
+                    .multiply(BigInteger.probablePrime(bits - bits / 2, rnd));
+            if (n.bitLength() == bits) return n;
+        }
+    }
+
+    // ============================
+    // Medición
+    // ============================
+
+    static final class Options {
+        int[] bits = DEFAULT_BITS;
+        Pattern include = Pattern.compile(".*");
+        int corpus = 30;
+        int warmup = 2;
+        int reps = 5;
+        int rounds = 5;
+        long budgetMillis = 3000;
+        long seed = 1;
+        String csv;
+        String json;
+    }
+
+    /** Mide todos los algoritmos seleccionados; imprime la tabla a medida que avanza. */
+    static List<Stats> run(Options o) {
+        int[] bitsList = o.bits.clone();
+        Arrays.sort(bitsList);
+        List<List<PrimalityBenchmark.Input>> corpora = new ArrayList<>();
+        for (int bits : bitsList) corpora.add(corpus(bits, o.corpus, o.seed));
+
+        List<Stats> results = new ArrayList<>();
+        System.out.printf("%-24s %6s %8s %12s %12s %12s %14s  %s%n",
+                "algoritmo", "bits", "muestras", "min ns", "mediana ns", "p99 ns", "llamadas/s", "estado");
+        for (PrimalityBenchmark.Case c : PrimalityBenchmark.cases(o.rounds)) {
+            if (!o.include.matcher(c.name).find()) continue;
+            long budget = o.budgetMillis * 1_000_000L;
+            long spent = 0;
+            long lastSize = 0;
+            boolean exhausted = false;
+            for (int b = 0; b < bitsList.length; b++) {
+                int bits = bitsList[b];
+                Stats s;
+                if (bits > c.maxBits) {
+                    s = new Stats(c.name, bits, new long[0], 0, "no factible");
+                } else if (exhausted || lastSize > budget - spent) {
+                    // un tamaño mayor cuesta al menos lo que costó el anterior
+                    exhausted = true;
+                    s = new Stats(c.name, bits, new long[0], 0, "presupuesto");
+                } else {
+                    long t0 = System.nanoTime();
+                    s = measure(c, bits, corpora.get(b), o, budget - spent);
+                    lastSize = System.nanoTime() - t0;
+                    spent += lastSize;
+                    if (!s.status.equals("ok")) exhausted = true;
+                }
+                results.add(s);
+                print(s);
+            }
+        }
+        return results;
+    }
+
+    /** warmup + reps pasadas sobre el corpus, cortando si se pasa de remaining ns. */
+    private static Stats measure(PrimalityBenchmark.Case c, int bits, List<PrimalityBenchmark.Input> inputs,
+                                 Options o, long remaining) {
+        long deadline = System.nanoTime() + remaining;
+        long[] nanos = new long[o.reps * inputs.size()];
+        int count = 0;
+        int acc = 0;
+        for (int pass = -o.warmup; pass < o.reps; pass++) {
+            for (PrimalityBenchmark.Input in : inputs) {
+                long t0 = System.nanoTime();
+                if (t0 > deadline) {
+                    PrimalityBenchmark.sink += acc;
+                    return new Stats(c.name, bits, nanos, count, "presupuesto");
+                }
+                if (c.op.test(in)) acc++;
+                long t1 = System.nanoTime();
+                if (pass >= 0) nanos[count++] = t1 - t0;
+            }
+        }
+        PrimalityBenchmark.sink += acc;
+        return new Stats(c.name, bits, nanos, count, "ok");
+    }
+
+    private static void print(Stats s) {
+        if (!s.measured()) {
+            System.out.printf("%-24s %6d %8s %12s %12s %12s %14s  %s%n", s.name, s.bits, "-", "-", "-", "-", "-", s.status);
+            return;
+        }
+        System.out.printf(Locale.ROOT, "%-24s %6d %8d %12d %12d %12d %14.1f  %s%n",
+                s.name, s.bits, s.samples, s.minNanos, s.medianNanos, s.p99Nanos, s.opsPerSecond, s.status);
+    }
+
+    // ============================
+    // Salida
+    // ============================
+
+    static String toCsv(List<Stats> results) {
+        StringBuilder sb = new StringBuilder("algoritmo,bits,muestras,min_ns,mediana_ns,p99_ns,media_ns,llamadas_por_s,estado\n");
+        for (Stats s : results) {
+            sb.append(String.format(Locale.ROOT, "%s,%d,%d,%d,%d,%d,%.1f,%.3f,%s%n",
+                    s.name, s.bits, s.samples, s.minNanos, s.medianNanos, s.p99Nanos, s.meanNanos, s.opsPerSecond, s.status));
+        }
+        return sb.toString();
+    }
+
+    static String toJson(Options o, List<Stats> results) {
+        StringBuilder sb = new StringBuilder("[\n");
+        for (int i = 0; i < results.size(); i++) {
+            Stats s = results.get(i);
+            sb.append(String.format(Locale.ROOT,
+                    "  {\"algorithm\": \"%s\", \"bits\": %d, \"corpus\": %d, \"warmup\": %d, \"reps\": %d, "
+                    + "\"rounds\": %d, \"samples\": %d, \"minNs\": %d, \"medianNs\": %d, \"p99Ns\": %d, "
+                    + "\"meanNs\": %.1f, \"opsPerSecond\": %.3f, \"status\": \"%s\"}%s%n",
+                    s.name, s.bits, o.corpus, o.warmup, o.reps, o.rounds, s.samples, s.minNanos, s.medianNanos,
+                    s.p99Nanos, s.meanNanos, s.opsPerSecond, s.status, i + 1 < results.size() ? "," : ""));
+        }
+        return sb.append("]\n").toString();
+    }
+
+    // ============================
+    // Línea de comandos
+    // ============================
+
+    static Options parse(String[] args) {
+        Options o = new Options();
+        for (int i = 0; i < args.length; i++) {
+            String a = args[i];
+            String v = i + 1 < args.length ? args[i + 1] : null;
+            if (v == null) throw new IllegalArgumentException("Falta el valor de " + a);
+            switch (a) {
+                case "--bits":
+                    String[] parts = v.split(",");
+                    o.bits = new int[parts.length];
+                    for (int k = 0; k < parts.length; k++) o.bits[k] = Integer.parseInt(parts[k].trim());
+                    break;
+                case "--include": o.include = Pattern.compile(v); break;
+                case "--corpus": o.corpus = Integer.parseInt(v); break;
+                case "--warmup": o.warmup = Integer.parseInt(v); break;
+                case "--reps": o.reps = Integer.parseInt(v); break;
+                case "--rounds": o.rounds = Integer.parseInt(v); break;
+                case "--budget": o.budgetMillis = Long.parseLong(v); break;
+                case "--seed": o.seed = Long.parseLong(v); break;
+                case "--csv": o.csv = v; break;
+                case "--json": o.json = v; break;
+                default: throw new IllegalArgumentException("Opción desconocida: " + a);
+            }
+            i++;
+        }
+        if (o.corpus < 1 || o.reps < 1 || o.warmup < 0) {
+            throw new IllegalArgumentException("--corpus y --reps deben ser >= 1, --warmup >= 0");
+        }
+        return o;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Options o = parse(args);
+        List<Stats> results = run(o);
+        if (o.csv != null) {
+            Files.write(Paths.get(o.csv), toCsv(results).getBytes(StandardCharsets.UTF_8));
+            System.out.println("CSV: " + o.csv);
+        }
+        if (o.json != null) {
+            Files.write(Paths.get(o.json), toJson(o, results).getBytes(StandardCharsets.UTF_8));
+            System.out.println("JSON: " + o.json);
+        }
+    }
+}
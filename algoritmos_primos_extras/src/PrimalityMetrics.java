@@ -0,0 +1,421 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * PrimalityMetrics.java
+ *
+ * Métricas de las entradas de PrimalityAllTests (desactivadas por defecto):
+ *   PrimalityMetrics.enable();  ...  System.out.print(PrimalityMetrics.snapshot());
+ * - Un Probe por método (fermat, millerRabin, ..., determinarNumeroPrimo1..5) con una celda
+ *   por rango de bits (<=16, 17-32, 33-64, ..., 2049-4096, >4096). Lucas-Lehmer usa los bits
+ *   de 2^p - 1, es decir p.
+ * - Las rondas son testigos aleatorios efectivamente probados (Fermat, Miller-Rabin,
+ *   Solovay-Strassen, Lehmann); Miller-Rabin en long (n < 2^63, bases fijas) no las cuenta.
+ *   millerRabinAdaptive (AdaptiveMillerRabin) cuenta también sus bases determinísticas.
+ * - Cada celda cuenta llamadas, resultados primos, rondas de testigos y tiempo total con
+ *   LongAdder (contadores por franjas, sin locks), y guarda un histograma de latencias
+ *   log-lineal al estilo de HdrHistogram: 8 sub-rangos por potencia de 2 (error < 12.5%),
+ *   de 1 ns a ~2,4 horas, en un AtomicLongArray.
+ * - modPows() cuenta las exponenciaciones modulares de ModContext (todas las pruebas).
+ * - Exportación: snapshot() en texto y MBeans JMX (primalidad:type=Metricas y
+ *   primalidad:type=Algoritmo,name=...), que enable() registra en el servidor de la plataforma.
+ * - Desactivadas, cada entrada solo lee un volatile. Activadas cuestan dos System.nanoTime y
+ *   unas pocas sumas, 60-100 ns por llamada (medido): dentro del 2% desde unos 5 µs por
+ *   llamada (pruebas BigInteger de 64 bits o más), pero ~20% en Miller-Rabin long de 30 bits
+ *   (~400 ns por llamada).
+ * También se activan con -Dprimalidad.metricas=true.
+ */
+public final class PrimalityMetrics {
+
+    /** Rangos de bits de las celdas. */
+    static final int BIT_BUCKETS = 10;
+    /** Sub-rangos por potencia de 2 del histograma (2^SUB_BITS). */
+    private static final int SUB_BITS = 3;
+    private static final int MAX_EXPONENT = 40;
+    private static final int HISTOGRAM_SIZE = (MAX_EXPONENT + 1) << SUB_BITS;
+
+    private static volatile boolean enabled = Boolean.getBoolean("primalidad.metricas");
+    private static final LongAdder MOD_POWS = new LongAdder();
+    private static final List<Probe> PROBES = Collections.synchronizedList(new ArrayList<>());
+    private static boolean registered;
+
+    public static final Probe FERMAT = probe("fermat");
+    public static final Probe MILLER_RABIN = probe("millerRabin");
+    public static final Probe MILLER_RABIN_ADAPTIVE = probe("millerRabinAdaptive");
+    public static final Probe SOLOVAY_STRASSEN = probe("solovayStrassen");
+    public static final Probe LEHMANN = probe("lehmann");
+    public static final Probe BAILLIE_PSW = probe("bailliePSW");
+    public static final Probe STRONG_LUCAS = probe("strongLucas");
+    public static final Probe AKS = probe("aks");
+    public static final Probe WILSON = probe("wilson");
+    public static final Probe LUCAS_LEHMER = probe("lucasLehmer");
+    public static final Probe SIMPLE_1 = probe("determinarNumeroPrimo1");
+    public static final Probe SIMPLE_2 = probe("determinarNumeroPrimo2");
+    public static final Probe SIMPLE_3 = probe("determinarNumeroPrimo3");
+    public static final Probe SIMPLE_4 = probe("determinarNumeroPrimo4");
+    public static final Probe SIMPLE_5 = probe("determinarNumeroPrimo5");
+
+    private PrimalityMetrics() {
+    }
+
+    private static Probe probe(String name) {
+        Probe p = new Probe(name);
+        PROBES.add(p);
+        return p;
+    }
+
+    // ============================
+    // Activación
+    // ============================
+
+    /** Activa las métricas y registra los MBeans (una sola vez). */
+    public static void enable() {
+        enabled = true;
+        registerMBeans();
+    }
+
+    public static void disable() {
+        enabled = false;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Inicio de una medición: System.nanoTime() si están activas, 0 si no. */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /** Una exponenciación modular más (la llama ModContext). */
+    static void modPow() {
+        if (enabled) MOD_POWS.increment();
+    }
+
+    public static long modPows() {
+        return MOD_POWS.sum();
+    }
+
+    public static void reset() {
+        MOD_POWS.reset();
+        synchronized (PROBES) {
+            for (Probe p : PROBES) p.reset();
+        }
+    }
+
+    /** Rango de bits: 0 para <= 16, luego uno por potencia de 2 hasta > 4096. */
+    static int bitBucket(int bits) {
+        if (bits <= 16) return 0;
+        return Math.min(BIT_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(bits - 1) - 4);
+    }
+
+    static String bitBucketName(int bucket) {
+        if (bucket == 0) return "<=16";
+        if (bucket == BIT_BUCKETS - 1) return ">" + (8 << bucket);
+        return ((8 << bucket) + 1) + "-" + (16 << bucket);
+    }
+
+    // ============================
+    // Probe y celdas
+    // ============================
+
+    /** Métricas de un método. */
+    public static final class Probe implements ProbeMBean {
+        private final String name;
+        private final AtomicReferenceArray<Cell> cells = new AtomicReferenceArray<>(BIT_BUCKETS);
+
+        private Probe(String name) {
+            this.name = name;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        /**
+         * Registra una llamada que empezó en t0 (de start()) con entrada de bits bits y
+         * devuelve result, para usarlo como return probe.record(t0, bits, test(...)).
+         */
+        public boolean record(long t0, int bits, boolean result) {
+            if (t0 == 0 || !enabled) return result;
+            long nanos = System.nanoTime() - t0;
+            Cell c = cell(bitBucket(bits));
+            c.calls.increment();
+            if (result) c.primes.increment();
+            c.nanos.add(nanos);
+            c.histogram.getAndIncrement(histogramIndex(nanos));
+            return result;
+        }
+
+        /** Una ronda de testigo más, en el rango de bits de la entrada. */
+        public void round(int bits) {
+            if (enabled) cell(bitBucket(bits)).rounds.increment();
+        }
+
+        /** count rondas de una vez (quien ya sabe cuántas usó). */
+        public void rounds(int bits, int count) {
+            if (enabled && count > 0) cell(bitBucket(bits)).rounds.add(count);
+        }
+
+        private Cell cell(int bucket) {
+            Cell c = cells.get(bucket);
+            if (c == null) {
+                cells.compareAndSet(bucket, null, new Cell());
+                c = cells.get(bucket);
+            }
+            return c;
+        }
+
+        void reset() {
+            for (int b = 0; b < BIT_BUCKETS; b++) cells.set(b, null);
+        }
+
+        // --- ProbeMBean: totales de todos los rangos de bits ---
+
+        @Override
+        public long getCalls() {
+            long total = 0;
+            for (int b = 0; b < BIT_BUCKETS; b++) {
+                Cell c = cells.get(b);
+                if (c != null) total += c.calls.sum();
+            }
+            return total;
+        }
+
+        @Override
+        public long getPrimes() {
+            long total = 0;
+            for (int b = 0; b < BIT_BUCKETS; b++) {
+                Cell c = cells.get(b);
+                if (c != null) total += c.primes.sum();
+            }
+            return total;
+        }
+
+        @Override
+        public double getPrimeRatio() {
+            long calls = getCalls();
+            return calls == 0 ? 0 : (double) getPrimes() / calls;
+        }
+
+        @Override
+        public long getRounds() {
+            long total = 0;
+            for (int b = 0; b < BIT_BUCKETS; b++) {
+                Cell c = cells.get(b);
+                if (c != null) total += c.rounds.sum();
+            }
+            return total;
+        }
+
+        @Override
+        public double getMeanNanos() {
+            long calls = 0;
+            long nanos = 0;
+            for (int b = 0; b < BIT_BUCKETS; b++) {
+                Cell c = cells.get(b);
+                if (c != null) {
+                    calls += c.calls.sum();
+                    nanos += c.nanos.sum();
+                }
+            }
+            return calls == 0 ? 0 : (double) nanos / calls;
+        }
+
+        @Override
+        public long getP50Nanos() {
+            return percentile(merged(), 0.50);
+        }
+
+        @Override
+        public long getP99Nanos() {
+            return percentile(merged(), 0.99);
+        }
+
+        @Override
+        public long getMaxNanos() {
+            return percentile(merged(), 1.0);
+        }
+
+        @Override
+        public String snapshot() {
+            StringBuilder sb = new StringBuilder();
+            appendTo(sb);
+            return sb.toString();
+        }
+
+        private long[] merged() {
+            long[] counts = new long[HISTOGRAM_SIZE];
+            for (int b = 0; b < BIT_BUCKETS; b++) {
+                Cell c = cells.get(b);
+                if (c == null) continue;
+                for (int i = 0; i < HISTOGRAM_SIZE; i++) counts[i] += c.histogram.get(i);
+            }
+            return counts;
+        }
+
+        void appendTo(StringBuilder sb) {
+            for (int b = 0; b < BIT_BUCKETS; b++) {
+                Cell c = cells.get(b);
+                if (c == null) continue;
+                long calls = c.calls.sum();
+                if (calls == 0) continue;
+                long[] counts = new long[HISTOGRAM_SIZE];
+                for (int i = 0; i < HISTOGRAM_SIZE; i++) counts[i] = c.histogram.get(i);
+                sb.append(String.format(Locale.ROOT, "%-24s %10s %10d %7.2f%% %9.2f %12.0f %12d %12d %12d %12d%n",
+                        name, bitBucketName(b), calls, 100.0 * c.primes.sum() / calls, (double) c.rounds.sum() / calls,
+                        (double) c.nanos.sum() / calls, percentile(counts, 0.5), percentile(counts, 0.9),
+                        percentile(counts, 0.99), percentile(counts, 1.0)));
+            }
+        }
+    }
+
+    /** Contadores de un método en un rango de bits. */
+    private static final class Cell {
+        final LongAdder calls = new LongAdder();
+        final LongAdder primes = new LongAdder();
+        final LongAdder rounds = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final AtomicLongArray histogram = new AtomicLongArray(HISTOGRAM_SIZE);
+    }
+
+    // ============================
+    // Histograma log-lineal
+    // ============================
+
+    /** Índice de v: exponente (bits - SUB_BITS) y los SUB_BITS bits siguientes al más alto. */
+    static int histogramIndex(long v) {
+        if (v < (1L << SUB_BITS)) return (int) Math.max(v, 0);
+        int exponent = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS + 1;
+        if (exponent > MAX_EXPONENT) return HISTOGRAM_SIZE - 1;
+        int sub = (int) (v >>> (exponent - 1)) & ((1 << SUB_BITS) - 1);
+        return (exponent << SUB_BITS) + sub;
+    }
+
+    /** Mayor valor que cae en el índice (cota superior del sub-rango). */
+    static long histogramValue(int index) {
+        int exponent = index >>> SUB_BITS;
+        int sub = index & ((1 << SUB_BITS) - 1);
+        if (exponent == 0) return sub;
+        return ((long) ((1 << SUB_BITS) + sub + 1) << (exponent - 1)) - 1;
+    }
+
+    /** Percentil q (0..1] por rango más cercano, como cota superior del sub-rango. */
+    static long percentile(long[] counts, double q) {
+        long total = 0;
+        for (long c : counts) total += c;
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) return histogramValue(i);
+        }
+        return histogramValue(counts.length - 1);
+    }
+
+    // ============================
+    // Exportación
+    // ============================
+
+    /** Tabla de texto: una fila por método y rango de bits con llamadas. */
+    public static String snapshot() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-24s %10s %10s %8s %9s %12s %12s %12s %12s %12s%n", "método", "bits", "llamadas",
+                "primos", "rondas", "media ns", "p50 ns", "p90 ns", "p99 ns", "máx ns"));
+        synchronized (PROBES) {
+            for (Probe p : PROBES) p.appendTo(sb);
+        }
+        sb.append("modPow: ").append(modPows()).append(enabled ? "" : " (métricas desactivadas)").append('\n');
+        return sb.toString();
+    }
+
+    /** Atributos JMX de un método (totales de todos los rangos de bits). */
+    public interface ProbeMBean {
+        long getCalls();
+
+        long getPrimes();
+
+        double getPrimeRatio();
+
+        long getRounds();
+
+        double getMeanNanos();
+
+        long getP50Nanos();
+
+        long getP99Nanos();
+
+        long getMaxNanos();
+
+        /** Filas de este método en la tabla de snapshot(). */
+        String snapshot();
+    }
+
+    /** Control global por JMX. */
+    public interface ControlMBean {
+        boolean isEnabled();
+
+        void setEnabled(boolean enabled);
+
+        long getModPows();
+
+        String snapshot();
+
+        void reset();
+    }
+
+    private static final class Control implements ControlMBean {
+        @Override
+        public boolean isEnabled() {
+            return PrimalityMetrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean on) {
+            if (on) PrimalityMetrics.enable();
+            else PrimalityMetrics.disable();
+        }
+
+        @Override
+        public long getModPows() {
+            return PrimalityMetrics.modPows();
+        }
+
+        @Override
+        public String snapshot() {
+            return PrimalityMetrics.snapshot();
+        }
+
+        @Override
+        public void reset() {
+            PrimalityMetrics.reset();
+        }
+    }
+
+    /** Registra los MBeans en el servidor de la plataforma (idempotente). */
+    public static synchronized void registerMBeans() {
+        if (registered) return;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(new Control(), new ObjectName("primalidad:type=Metricas"));
+            synchronized (PROBES) {
+                for (Probe p : PROBES) {
+                    server.registerMBean(p, new ObjectName("primalidad:type=Algoritmo,name=" + p.name()));
+                }
+            }
+            registered = true;
+        } catch (JMException e) {
+            throw new IllegalStateException("No se pudieron registrar los MBeans de métricas", e);
+        }
+    }
+}
@@ -0,0 +1,307 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * PrimalityServer.java
+ *
+ * Punto de acceso TCP local (solo 127.0.0.1) para PrimalityService, con un protocolo de
+ * líneas de texto UTF-8:
+ *   <id> <alg> <n>[,<n>...] [rounds=R] [ms=T]   alg: fermat|mr|mra|ss|lehmann|bpsw|aks|wilson
+ *                                               o s1..s5 (determinarNumeroPrimo1..5, n int)
+ *   <id> cancel <otroId>
+ *   <id> stats
+ *   quit
+ * Respuestas, una línea por petición y con su id:
+ *   <id> ok 1 0 1        (un 1 = primo o 0 = compuesto por número, en el orden pedido)
+ *   <id> timeout | <id> cancelled | <id> error <mensaje>
+ * - Pipelining: el cliente puede enviar muchas líneas sin esperar; cada una se despacha al
+ *   leerla y las respuestas salen cuando terminan (no necesariamente en orden: por eso el id).
+ * - Lotes: varios números separados por comas en una línea son una sola petición con un plazo
+ *   común (PrimalityService.testAll; en s1..s5 el plazo es por número). Las respuestas
+ *   pendientes se escriben juntas y se vacían al socket una vez por tanda, no una por línea.
+ * - Plazo: ms=T por petición, o el plazo por defecto del servidor; al vencer se interrumpe
+ *   el cálculo (una llamada a wilson o s1 desbocada no retiene un núcleo).
+ * - Si el cliente cierra su lado de escritura se responden las peticiones pendientes; si se
+ *   corta la conexión, se cancelan.
+ *
+ * Uso: java -cp bin PrimalityServer [--port=7919] [--threads=N] [--deadline-ms=10000]
+ *      echo "1 mr 1000000007,1000000008" | nc 127.0.0.1 7919
+ */
+public final class PrimalityServer implements AutoCloseable {
+
+    public static final int DEFAULT_PORT = 7919;
+    public static final Duration DEFAULT_DEADLINE = Duration.ofSeconds(10);
+
+    private final PrimalityService service;
+    private final ServerSocket socket;
+    private final Duration defaultDeadline;
+
+    /** Escucha en 127.0.0.1:port (0 = un puerto libre, ver port()). */
+    public PrimalityServer(PrimalityService service, int port, Duration defaultDeadline) throws IOException {
+        this.service = service;
+        this.defaultDeadline = defaultDeadline;
+        this.socket = new ServerSocket();
+        socket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    public int port() {
+        return socket.getLocalPort();
+    }
+
+    /** Atiende conexiones en el ejecutor de peticiones del servicio, sin bloquear al que llama. */
+    public PrimalityServer start() {
+        service.requestExecutor().execute(this::serve);
+        return this;
+    }
+
+    /** Acepta conexiones hasta close(); cada una se atiende en el ejecutor de peticiones. */
+    public void serve() {
+        while (!socket.isClosed()) {
+            try {
+                Socket client = socket.accept();
+                service.requestExecutor().execute(() -> new Connection(client).run());
+            } catch (IOException e) {
+                if (!socket.isClosed()) System.err.println("PrimalityServer: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    // ============================
+    // Conexión
+    // ============================
+
+    private final class Connection {
+        private final Socket client;
+        /** Peticiones en curso por id (para cancel y para cancelarlas si se corta la conexión). */
+        private final ConcurrentHashMap<String, Request> inFlight = new ConcurrentHashMap<>();
+        /** Respuestas aún no encoladas (se completan después de encolar la respuesta). */
+        private final Set<CompletableFuture<Void>> unanswered = ConcurrentHashMap.newKeySet();
+        private final BlockingQueue<String> responses = new LinkedBlockingQueue<>();
+        /** Marca de fin para el escritor (se compara por identidad). */
+        private final String endOfStream = new String("fin");
+
+        Connection(Socket client) {
+            this.client = client;
+        }
+
+        void run() {
+            CompletableFuture<Void> writer = CompletableFuture.runAsync(this::writeResponses, service.requestExecutor());
+            boolean clientGone = false;
+            // el lector no se cierra aparte: cerrarlo cerraría el socket antes de responder
+            try {
+                BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+                String line;
+                while ((line = in.readLine()) != null) {
+                    line = line.trim();
+                    if (line.isEmpty()) continue;
+                    if (line.equals("quit")) break;
+                    dispatch(line);
+                }
+            } catch (IOException e) {
+                clientGone = true;
+            }
+            if (clientGone) {
+                inFlight.values().forEach(Request::cancel);
+            } else {
+                // fin de la entrada: se responden las pendientes (todas tienen plazo)
+                CompletableFuture.allOf(unanswered.toArray(new CompletableFuture<?>[0])).join();
+            }
+            responses.add(endOfStream);
+            writer.join();
+            try {
+                client.close();
+            } catch (IOException ignored) {
+                // ya cerrada
+            }
+        }
+
+        /** Escribe las respuestas a medida que llegan; vacía el buffer una vez por tanda. */
+        private void writeResponses() {
+            try {
+                Writer out = new BufferedWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8));
+                List<String> batch = new ArrayList<>();
+                while (true) {
+                    batch.add(responses.take());
+                    responses.drainTo(batch);
+                    for (String response : batch) {
+                        if (response == endOfStream) {
+                            out.flush();
+                            return;
+                        }
+                        out.write(response);
+                        out.write('\n');
+                    }
+                    batch.clear();
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // el cliente cortó la conexión
+                inFlight.values().forEach(Request::cancel);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void dispatch(String line) {
+            String[] parts = line.split("\\s+");
+            String id = parts[0];
+            if (parts.length < 2) {
+                responses.add(id + " error petición incompleta");
+                return;
+            }
+            try {
+                switch (parts[1]) {
+                    case "stats":
+                        responses.add(id + " ok " + service.stats());
+                        return;
+                    case "cancel": {
+                        if (parts.length != 3) throw new IllegalArgumentException("uso: <id> cancel <otroId>");
+                        Request target = inFlight.get(parts[2]);
+                        boolean done = target != null && target.cancel();
+                        responses.add(id + " ok " + (done ? 1 : 0));
+                        return;
+                    }
+                    default:
+                        break;
+                }
+                if (parts.length < 3) throw new IllegalArgumentException("falta el número");
+                int rounds = PrimalityBatch.DEFAULT_ROUNDS;
+                Duration deadline = defaultDeadline;
+                for (int i = 3; i < parts.length; i++) {
+                    String option = parts[i];
+                    if (option.startsWith("rounds=")) rounds = Integer.parseInt(option.substring(7));
+                    else if (option.startsWith("ms=")) deadline = Duration.ofMillis(Long.parseLong(option.substring(3)));
+                    else throw new IllegalArgumentException("opción desconocida: " + option);
+                }
+                Request request = submit(parts[1], parts[2].split(","), rounds, deadline);
+                if (inFlight.putIfAbsent(id, request) != null) {
+                    request.cancel();
+                    throw new IllegalArgumentException("id en uso: " + id);
+                }
+                CompletableFuture<Void> answered = request.reply.handle((answer, error) -> {
+                    inFlight.remove(id, request);
+                    responses.add(id + " " + (error == null ? "ok " + answer : describe(error)));
+                    return null;
+                });
+                unanswered.add(answered);
+                answered.thenRun(() -> unanswered.remove(answered));
+            } catch (RuntimeException e) {
+                responses.add(id + " error " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Petición en curso: work son los futuros del servicio (cancelarlos interrumpe el cálculo) y
+     * reply el texto de la respuesta, una continuación aparte. Cancelar reply no llegaría al
+     * cálculo: cancel() de un futuro derivado no se propaga a los anteriores.
+     */
+    private static final class Request {
+        final List<? extends CompletableFuture<?>> work;
+        final CompletableFuture<String> reply;
+
+        Request(List<? extends CompletableFuture<?>> work, CompletableFuture<String> reply) {
+            this.work = work;
+            this.reply = reply;
+        }
+
+        /** Cancela el cálculo; true si quedaba alguna parte por terminar. */
+        boolean cancel() {
+            boolean cancelled = false;
+            for (CompletableFuture<?> part : work) cancelled |= part.cancel(true);
+            return cancelled;
+        }
+    }
+
+    /** Lanza la petición; reply da los veredictos separados por espacios ("1 0 1"). */
+    private Request submit(String alg, String[] numbers, int rounds, Duration deadline) {
+        if (alg.length() == 2 && alg.charAt(0) == 's' && Character.isDigit(alg.charAt(1))) {
+            int method = alg.charAt(1) - '0';
+            int[] values = new int[numbers.length];
+            for (int i = 0; i < numbers.length; i++) values[i] = Integer.parseInt(numbers[i]);
+            List<CompletableFuture<Boolean>> parts = new ArrayList<>(numbers.length);
+            for (int numero : values) parts.add(service.testSimple(method, numero, deadline));
+            CompletableFuture<String> reply = CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0]))
+                    .handle((ignored, error) -> {
+                        if (error == null) return joinVerdicts(parts);
+                        parts.forEach(part -> part.cancel(true));
+                        throw new CompletionException(PrimalityService.unwrap(error));
+                    });
+            return new Request(parts, reply);
+        }
+        Algorithm algorithm = Algorithm.fromCode(alg);
+        List<BigInteger> ns = new ArrayList<>(numbers.length);
+        for (String number : numbers) ns.add(new BigInteger(number));
+        CompletableFuture<List<PrimalityService.Result>> all = service.testAll(ns, algorithm, rounds, deadline);
+        CompletableFuture<String> reply = all.thenApply(results -> {
+            StringBuilder sb = new StringBuilder();
+            for (PrimalityService.Result r : results) sb.append(sb.length() == 0 ? "" : " ").append(r.isPrime() ? 1 : 0);
+            return sb.toString();
+        });
+        // testAll cancela sus partes (y sus hilos de cálculo) cuando se cancela all
+        return new Request(List.of(all), reply);
+    }
+
+    private static String joinVerdicts(List<CompletableFuture<Boolean>> parts) {
+        StringBuilder sb = new StringBuilder();
+        for (CompletableFuture<Boolean> part : parts) sb.append(sb.length() == 0 ? "" : " ").append(part.join() ? 1 : 0);
+        return sb.toString();
+    }
+
+    private static String describe(Throwable error) {
+        Throwable cause = PrimalityService.unwrap(error);
+        if (cause instanceof TimeoutException) return "timeout";
+        if (cause instanceof CancellationException) return "cancelled";
+        String message = cause.getMessage();
+        return "error " + (message == null ? cause.getClass().getSimpleName() : message.replace('\n', ' '));
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Duration deadline = DEFAULT_DEADLINE;
+        for (String arg : args) {
+            if (arg.startsWith("--port=")) port = Integer.parseInt(arg.substring(7));
+            else if (arg.startsWith("--threads=")) threads = Integer.parseInt(arg.substring(10));
+            else if (arg.startsWith("--deadline-ms=")) deadline = Duration.ofMillis(Long.parseLong(arg.substring(14)));
+            else {
+                System.err.println("Uso: [--port=" + DEFAULT_PORT + "] [--threads=N] [--deadline-ms=10000]");
+                System.exit(2);
+            }
+        }
+        PrimalityService service = new PrimalityService(threads);
+        try (PrimalityServer server = new PrimalityServer(service, port, deadline)) {
+            System.out.println("Escuchando en 127.0.0.1:" + server.port() + " (" + threads + " hilos de cálculo, hilos virtuales: "
+                    + service.usesVirtualThreads() + ")");
+            server.serve();
+        } finally {
+            service.close();
+        }
+    }
+}
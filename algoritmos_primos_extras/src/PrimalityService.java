@@ -0,0 +1,291 @@
+import java.lang.reflect.Method;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * PrimalityService.java
+ *
+ * API asíncrona (CompletableFuture) sobre las pruebas de PrimalityAllTests, para usarlas
+ * desde servicios sin el menú de Scanner:
+ * - Dos ejecutores: el de peticiones (hilos virtuales si la JVM los tiene, buscados por
+ *   reflexión; si no, un pool cacheado de hilos daemon) para esperas, continuaciones y
+ *   conexiones (ver PrimalityServer), y un pool fijo de cpuThreads hilos para el cálculo.
+ *   Los hilos virtuales no deben quedar ocupados en un cálculo largo (retienen su hilo
+ *   portador), y el pool fijo acota cuántos núcleos usan las pruebas a la vez.
+ * - Los futuros que devuelve ejecutan sus continuaciones ...Async en el ejecutor de
+ *   peticiones, no en el ForkJoinPool común.
+ * - Plazo por petición (orTimeout) y cancel(): ambos interrumpen el hilo del cálculo. Las
+ *   pruebas largas (Wilson, AKS, métodos simples 1..3) comprueban la interrupción cada tanto
+ *   con checkInterrupted() y terminan con CancellationException; las demás son cortas y
+ *   terminan solas. Una petición que vence antes de empezar no llega a ejecutarse.
+ * - stats(): peticiones, completadas, vencidas y canceladas.
+ */
+public final class PrimalityService implements AutoCloseable {
+
+    private final ExecutorService requests;
+    private final ThreadPoolExecutor cpu;
+    private final boolean virtualThreads;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+
+    /** Un hilo de cálculo por núcleo. */
+    public PrimalityService() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public PrimalityService(int cpuThreads) {
+        if (cpuThreads < 1) throw new IllegalArgumentException("cpuThreads debe ser >= 1: " + cpuThreads);
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.requests = virtual != null ? virtual : Executors.newCachedThreadPool(daemonThreads("primalidad-peticion-"));
+        this.cpu = new ThreadPoolExecutor(cpuThreads, cpuThreads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), daemonThreads("primalidad-cpu-"));
+    }
+
+    /** Executors.newVirtualThreadPerTaskExecutor() (Java 21+), o null si no existe. */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Java < 21, o hilos virtuales en vista previa sin --enable-preview
+            return null;
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger next = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + next.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /** true si las peticiones corren en hilos virtuales. */
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /** Ejecutor de peticiones (hilos virtuales o pool cacheado): para tareas que esperan. */
+    public Executor requestExecutor() {
+        return requests;
+    }
+
+    @Override
+    public void close() {
+        cpu.shutdownNow();
+        requests.shutdownNow();
+    }
+
+    // ============================
+    // API
+    // ============================
+
+    /** Resultado de una prueba: veredicto, confianza (ver Algorithm.confidenceBits) y tiempo. */
+    public static final class Result {
+        private final BigInteger n;
+        private final Algorithm algorithm;
+        private final boolean prime;
+        private final int confidenceBits;
+        private final long nanos;
+
+        Result(BigInteger n, Algorithm algorithm, boolean prime, int confidenceBits, long nanos) {
+            this.n = n;
+            this.algorithm = algorithm;
+            this.prime = prime;
+            this.confidenceBits = confidenceBits;
+            this.nanos = nanos;
+        }
+
+        public BigInteger n() {
+            return n;
+        }
+
+        public Algorithm algorithm() {
+            return algorithm;
+        }
+
+        public boolean isPrime() {
+            return prime;
+        }
+
+        /** Bits de confianza de un "primo" (Algorithm.EXACT si es exacto; los compuestos lo son). */
+        public int confidenceBits() {
+            return confidenceBits;
+        }
+
+        /** Tiempo de cálculo, sin la espera en cola. */
+        public long nanos() {
+            return nanos;
+        }
+
+        @Override
+        public String toString() {
+            return n + " " + (prime ? "primo" : "compuesto") + " (" + algorithm.displayName() + ", "
+                    + (nanos / 1000) + " µs)";
+        }
+    }
+
+    /** Prueba n con alg y PrimalityBatch.DEFAULT_ROUNDS rondas, sin plazo. */
+    public CompletableFuture<Result> test(BigInteger n, Algorithm alg) {
+        return test(n, alg, PrimalityBatch.DEFAULT_ROUNDS, null);
+    }
+
+    /** Prueba n con alg; deadline null = sin plazo (si vence, el futuro falla con TimeoutException). */
+    public CompletableFuture<Result> test(BigInteger n, Algorithm alg, int rounds, Duration deadline) {
+        Objects.requireNonNull(n, "n");
+        Objects.requireNonNull(alg, "alg");
+        if (rounds < 1) throw new IllegalArgumentException("rounds debe ser >= 1: " + rounds);
+        return submit(() -> {
+            long t0 = System.nanoTime();
+            boolean prime = alg.test(n, rounds);
+            long nanos = System.nanoTime() - t0;
+            return new Result(n, alg, prime, prime ? alg.confidenceBits(n, rounds) : Algorithm.EXACT, nanos);
+        }, deadline);
+    }
+
+    /**
+     * Prueba un lote con un plazo común: cada candidato es una tarea del pool de cálculo y el
+     * resultado conserva el orden de ns. Si una falla o vence el plazo, se cancelan las demás.
+     */
+    public CompletableFuture<List<Result>> testAll(List<BigInteger> ns, Algorithm alg, int rounds, Duration deadline) {
+        List<CompletableFuture<Result>> parts = new ArrayList<>(ns.size());
+        for (BigInteger n : ns) parts.add(test(n, alg, rounds, null));
+        CompletableFuture<List<Result>> all = newFuture();
+        CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0])).whenComplete((ignored, error) -> {
+            if (error != null) {
+                all.completeExceptionally(unwrap(error));
+                return;
+            }
+            List<Result> results = new ArrayList<>(parts.size());
+            for (CompletableFuture<Result> part : parts) results.add(part.join());
+            all.complete(results);
+        });
+        all.whenComplete((ignored, error) -> {
+            if (error != null) parts.forEach(part -> part.cancel(true));
+        });
+        if (deadline != null) withDeadline(all, deadline);
+        return all;
+    }
+
+    /** determinarNumeroPrimo1..5 de PrimalityAllTests (method = 1..5). */
+    public CompletableFuture<Boolean> testSimple(int method, int numero, Duration deadline) {
+        switch (method) {
+            case 1: return submit(() -> PrimalityAllTests.determinarNumeroPrimo1(numero), deadline);
+            case 2: return submit(() -> PrimalityAllTests.determinarNumeroPrimo2(numero), deadline);
+            case 3: return submit(() -> PrimalityAllTests.determinarNumeroPrimo3(numero), deadline);
+            case 4: return submit(() -> PrimalityAllTests.determinarNumeroPrimo4(numero), deadline);
+            case 5: return submit(() -> PrimalityAllTests.determinarNumeroPrimo5(numero), deadline);
+            default: throw new IllegalArgumentException("Método simple fuera de rango (1..5): " + method);
+        }
+    }
+
+    /**
+     * Ejecuta task en el pool de cálculo. Si el futuro se completa desde fuera (cancel, plazo
+     * vencido o completeExceptionally), la tarea se cancela: no empieza si seguía en cola, y si
+     * ya corría se interrumpe su hilo.
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task, Duration deadline) {
+        Objects.requireNonNull(task, "task");
+        submitted.increment();
+        CompletableFuture<T> future = newFuture();
+        FutureTask<Void> work = new FutureTask<>(() -> {
+            if (future.isDone()) return;
+            try {
+                future.complete(task.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }, null);
+        future.whenComplete((value, error) -> {
+            if (error == null) {
+                completed.increment();
+                return;
+            }
+            Throwable cause = unwrap(error);
+            if (cause instanceof TimeoutException) timedOut.increment();
+            else if (cause instanceof CancellationException) cancelled.increment();
+            work.cancel(true);
+        });
+        if (deadline != null) withDeadline(future, deadline);
+        try {
+            cpu.execute(work);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private static void withDeadline(CompletableFuture<?> future, Duration deadline) {
+        if (deadline.isNegative()) throw new IllegalArgumentException("deadline negativo: " + deadline);
+        future.orTimeout(deadline.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /** Causa real de un error de CompletableFuture (sin CompletionException). */
+    static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) error = error.getCause();
+        return error;
+    }
+
+    private <T> CompletableFuture<T> newFuture() {
+        return new ServiceFuture<>();
+    }
+
+    /** CompletableFuture cuyas continuaciones ...Async usan el ejecutor de peticiones. */
+    private final class ServiceFuture<T> extends CompletableFuture<T> {
+        @Override
+        public Executor defaultExecutor() {
+            return requests;
+        }
+
+        @Override
+        public <U> CompletableFuture<U> newIncompleteFuture() {
+            return new ServiceFuture<>();
+        }
+    }
+
+    // ============================
+    // Cancelación cooperativa
+    // ============================
+
+    /**
+     * Punto de cancelación para los bucles largos: si el hilo actual fue interrumpido, lanza
+     * CancellationException (el indicador de interrupción queda puesto).
+     */
+    static void checkInterrupted() {
+        if (Thread.currentThread().isInterrupted()) throw new CancellationException("prueba interrumpida");
+    }
+
+    // ============================
+    // Estadísticas
+    // ============================
+
+    /** Peticiones enviadas, completadas, vencidas, canceladas, y tareas en cola del pool de cálculo. */
+    public String stats() {
+        return String.format("peticiones=%d completadas=%d vencidas=%d canceladas=%d en_cola=%d hilos_virtuales=%b",
+                submitted.sum(), completed.sum(), timedOut.sum(), cancelled.sum(), cpu.getQueue().size(),
+                virtualThreads);
+    }
+}
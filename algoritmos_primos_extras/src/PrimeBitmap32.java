@@ -0,0 +1,144 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * PrimeBitmap32.java
+ *
+ * Tabla de primalidad para todos los n < 2^32 (o un límite menor): isPrime(n) es una
+ * lectura de un byte y una máscara, en lugar de los bucles de determinarNumeroPrimo1..5.
+ * - Formato rueda-30 (Wheel30): 8 bits por cada 30 números, unos 137 MB para 2^32
+ *   (el mapa solo-impares ocuparía 256 MB).
+ * - build(limit) criba con SegmentedSieve en el arranque (algunos segundos para 2^32).
+ * - save(path) la guarda; load(path) la mapea en memoria y la carga completa;
+ *   mapLazy(path) la mapea sin cargarla: las páginas se leen del disco al consultarlas,
+ *   así el arranque es inmediato.
+ * Formato del archivo: "PB30", versión (int), límite (long), luego los bytes de la rueda.
+ */
+public final class PrimeBitmap32 {
+
+    /** Límite máximo: todos los enteros de 32 bits sin signo. */
+    public static final long FULL_LIMIT = 1L << 32;
+
+    private static final int MAGIC = 0x50423330; // "PB30"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+
+    private final ByteBuffer bits;
+    private final long limit;
+
+    private PrimeBitmap32(ByteBuffer bits, long limit) {
+        this.bits = bits;
+        this.limit = limit;
+    }
+
+    /** Criba [0, limit) (limit <= 2^32). */
+    public static PrimeBitmap32 build(long limit) {
+        if (limit < 1 || limit > FULL_LIMIT) throw new IllegalArgumentException("limit fuera de rango: " + limit);
+        byte[] table = new byte[(int) Wheel30.bytesFor(limit)];
+        if (limit > 7) {
+            SegmentedSieve.forEachPrime(7, limit - 1, p -> {
+                int index = (int) (p / 30);
+                table[index] |= Wheel30.BIT_OF_RESIDUE[(int) (p - index * 30L)];
+            });
+        }
+        return new PrimeBitmap32(ByteBuffer.wrap(table), limit);
+    }
+
+    /** Tabla completa hasta 2^32. */
+    public static PrimeBitmap32 build() {
+        return build(FULL_LIMIT);
+    }
+
+    /** Mapea el archivo y carga todas sus páginas (consultas sin fallos de página). */
+    public static PrimeBitmap32 load(Path file) throws IOException {
+        PrimeBitmap32 table = map(file);
+        ((MappedByteBuffer) table.bits).load();
+        return table;
+    }
+
+    /** Mapea el archivo sin cargarlo: cada página se lee la primera vez que se consulta. */
+    public static PrimeBitmap32 mapLazy(Path file) throws IOException {
+        return map(file);
+    }
+
+    /** load(file) si existe; si no, build(limit) y lo guarda para la próxima vez. */
+    public static PrimeBitmap32 loadOrBuild(Path file, long limit) throws IOException {
+        if (Files.exists(file)) {
+            PrimeBitmap32 table = load(file);
+            if (table.limit >= limit) return table;
+        }
+        PrimeBitmap32 table = build(limit);
+        table.save(file);
+        return table;
+    }
+
+    private static PrimeBitmap32 map(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.BIG_ENDIAN);
+            while (header.hasRemaining()) {
+                if (ch.read(header) < 0) break;
+            }
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("No es una tabla PrimeBitmap32: " + file);
+            }
+            long limit = header.getLong();
+            long size = Wheel30.bytesFor(limit);
+            if (limit < 1 || limit > FULL_LIMIT || ch.size() < HEADER_BYTES + size) {
+                throw new IOException("Tabla PrimeBitmap32 truncada o dañada: " + file);
+            }
+            // el mapeo sigue siendo válido después de cerrar el canal
+            return new PrimeBitmap32(ch.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, size), limit);
+        }
+    }
+
+    /** Guarda la tabla (en un temporal que luego se renombra). */
+    public void save(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.BIG_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putLong(limit).flip();
+            while (header.hasRemaining()) ch.write(header);
+            ByteBuffer data = bits.duplicate();
+            data.clear();
+            while (data.hasRemaining()) ch.write(data);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // ============================
+    // Consultas
+    // ============================
+
+    /** Límite (exclusivo) cubierto por la tabla. */
+    public long limit() {
+        return limit;
+    }
+
+    /** n interpretado con signo: los negativos no son primos. */
+    public boolean isPrime(int n) {
+        return n >= 0 && isPrime((long) n);
+    }
+
+    /** Primalidad de 0 <= n < limit() con una sola lectura de la tabla. */
+    public boolean isPrime(long n) {
+        if (n < 0 || n >= limit) throw new IllegalArgumentException("n fuera de la tabla: " + n);
+        int index = (int) (n / 30);
+        int mask = Wheel30.BIT_OF_RESIDUE[(int) (n - index * 30L)];
+        if (mask == 0) return n == 2 || n == 3 || n == 5;
+        return (bits.get(index) & mask) != 0;
+    }
+
+    /** isPrime para n sin signo (cualquier int, como valor de 0 a 2^32 - 1). */
+    public boolean isPrimeUnsigned(int n) {
+        return isPrime(Integer.toUnsignedLong(n));
+    }
+}
@@ -0,0 +1,355 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * PrimeCounting.java
+ *
+ * π(x) (cantidad de primos <= x) con la fórmula de Meissel-Lehmer, sin enumerar los primos:
+ *   π(x) = φ(x, a) + a - 1 - P2(x, a),  a = π(y), y = ⌊x^(1/3)⌋
+ * - φ(z, b) cuenta los 1 <= n <= z sin factores entre los b primeros primos. Se calcula con
+ *   φ(z, b) = φ(z, c) - Σ_{c<i<=b} φ(z/p_i, i-1) y los atajos de siempre:
+ *   · b <= 6: periodicidad módulo 2·3·5·7·11·13 (tabla de 30030 entradas por b).
+ *   · z < p_{b+1}^2: φ(z, b) = π(z) - b + 1, con la tabla de π.
+ *   · z < p_i^2 en la suma: los términos restantes valen 1 (o 0 si p_i > z) y se suman
+ *     de una vez.
+ *   · z < 2^20 y b < 100: caché de φ cribada de antemano (un bit por impar que sobrevive a
+ *     los b primeros primos y un conteo acumulado cada 4 palabras; arrays primitivos).
+ * - P2(x, a) = Σ_{y < p <= √x} (π(x/p) - π(p) + 1): como x/p < x/y, basta la tabla de π.
+ * - La tabla de π cubre hasta x/y ≈ x^(2/3): un bit por impar (primo o no) y un conteo
+ *   cada 256 impares, ~x^(2/3)/14 bytes (150 MB para 10^14). Se criba en paralelo con los
+ *   segmentos de SegmentedSieve, un bloque de segmentos por tarea.
+ * - Los términos de la suma de φ(x, a) también se reparten entre los hilos.
+ * Límite: x <= MAX_X = 2^48 (tabla de ~300 MB).
+ *
+ * Uso: java -cp bin PrimeCounting 1e14 [hilos]   |   java -cp bin PrimeCounting --check
+ */
+public final class PrimeCounting {
+
+    /** Mayor x admitido. */
+    public static final long MAX_X = 1L << 48;
+    /** Hasta aquí π(x) se cuenta directamente con SegmentedSieve. */
+    private static final long SIEVE_ONLY = 1L << 20;
+
+    /** b <= SMALL_B se resuelve con la tabla periódica. */
+    private static final int SMALL_B = 6;
+    private static final int PRIMORIAL = 2 * 3 * 5 * 7 * 11 * 13;
+    /** PHI_SMALL[b][r] = φ(r, b) para 0 <= r <= PRIMORIAL. */
+    private static final int[][] PHI_SMALL = phiSmallTable();
+
+    /** La caché de φ cubre z < CACHE_Z y b < CACHE_B. */
+    private static final int CACHE_Z = 1 << 20;
+    private static final int CACHE_B = 100;
+
+    /** Valores conocidos de π(10^k), k = 0..14. */
+    static final long[] PI_POWERS_OF_TEN = {0, 4, 25, 168, 1229, 9592, 78498, 664579, 5761455, 50847534,
+            455052511L, 4118054813L, 37607912018L, 346065536839L, 3204941750802L};
+
+    private PrimeCounting() {
+    }
+
+    // ============================
+    // API
+    // ============================
+
+    /** π(x) con todos los núcleos disponibles. */
+    public static long pi(long x) {
+        return pi(x, Runtime.getRuntime().availableProcessors());
+    }
+
+    /** π(x) para 0 <= x <= MAX_X, con parallelism hilos para la criba y la suma de φ. */
+    public static long pi(long x, int parallelism) {
+        if (x < 0 || x > MAX_X) throw new IllegalArgumentException("x debe estar en [0, 2^48]: " + x);
+        if (parallelism < 1) throw new IllegalArgumentException("parallelism debe ser >= 1");
+        if (x < 2) return 0;
+        if (x <= SIEVE_ONLY) return SegmentedSieve.countPrimes(0, x);
+
+        long y = icbrt(x);
+        long sqrt = TrialDivision.isqrt(x);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            PiTable table = PiTable.build(x / y, pool, parallelism);
+            int[] primes = table.primesUpTo(sqrt); // primes[i] = p_i, primes[0] = 1
+            int a = (int) table.pi(y);
+            int b = primes.length - 1;
+            Phi phi = new Phi(primes, table);
+
+            long p2 = 0;
+            for (int i = a + 1; i <= b; i++) p2 += table.pi(x / primes[i]) - (i - 1);
+            return phi.parallel(x, a, pool) + a - 1 - p2;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** ⌊x^(1/3)⌋ exacto para x >= 0. */
+    static long icbrt(long x) {
+        long r = (long) Math.cbrt((double) x);
+        while (r > 0 && r * r * r > x) r--;
+        while ((r + 1) * (r + 1) * (r + 1) <= x) r++;
+        return r;
+    }
+
+    // ============================
+    // φ(z, b)
+    // ============================
+
+    private static final class Phi {
+        private final int[] primes;
+        private final PiTable table;
+        /** Para b < CACHE_B: bits de los impares < CACHE_Z sin factores entre p_1..p_b. */
+        private final long[][] cacheBits;
+        /** Conteo acumulado de cacheBits[b] cada 4 palabras. */
+        private final int[][] cacheCounts;
+
+        Phi(int[] primes, PiTable table) {
+            this.primes = primes;
+            this.table = table;
+            int maxB = Math.min(CACHE_B, primes.length);
+            this.cacheBits = new long[maxB][];
+            this.cacheCounts = new int[maxB][];
+            int words = CACHE_Z / 128;
+            long[] bits = new long[words];
+            Arrays.fill(bits, -1L); // impares 1, 3, 5, ... (p_1 = 2 ya está excluido)
+            for (int b = 1; b < maxB; b++) {
+                if (b >= 2) {
+                    int p = primes[b];
+                    for (long j = (p - 1) / 2; j < (long) words * 64; j += p) bits[(int) (j >>> 6)] &= ~(1L << j);
+                }
+                if (b > SMALL_B) {
+                    cacheBits[b] = bits.clone();
+                    cacheCounts[b] = blockCounts(cacheBits[b]);
+                }
+            }
+        }
+
+        /** φ(x, a) repartiendo los términos de la suma entre los hilos de pool. */
+        long parallel(long x, int a, ForkJoinPool pool) {
+            if (a <= SMALL_B) return phi(x, a);
+            List<Future<Long>> parts = new ArrayList<>();
+            // los primeros términos son los más costosos: uno por tarea; el resto en bloques
+            int i = SMALL_B + 1;
+            while (i <= a) {
+                int from = i;
+                int to = Math.min(a, i < 4 * SMALL_B ? i : i + (i >>> 3));
+                parts.add(pool.submit(() -> {
+                    long s = 0;
+                    for (int k = from; k <= to; k++) s += term(x, k);
+                    return s;
+                }));
+                i = to + 1;
+            }
+            long sum = phiSmall(x, SMALL_B);
+            try {
+                for (Future<Long> f : parts) sum -= f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Cálculo de π(x) interrumpido", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Error en el cálculo de φ", e.getCause());
+            } finally {
+                for (Future<Long> f : parts) f.cancel(false);
+            }
+            return sum;
+        }
+
+        /** Término φ(x/p_i, i-1) de la suma de φ(x, a). */
+        private long term(long x, int i) {
+            long z = x / primes[i];
+            if (z < primes[i]) return z >= 1 ? 1 : 0;
+            return phi(z, i - 1);
+        }
+
+        long phi(long z, int b) {
+            if (b <= SMALL_B) return phiSmall(z, b);
+            if (z < primes[b + 1 < primes.length ? b + 1 : b]) return z >= 1 ? 1 : 0;
+            if (b + 1 < primes.length && z <= table.limit && z < (long) primes[b + 1] * primes[b + 1]) {
+                return table.pi(z) - b + 1;
+            }
+            if (z < CACHE_Z && b < cacheBits.length) return cached(z, b);
+
+            long sum = phiSmall(z, SMALL_B);
+            for (int i = SMALL_B + 1; i <= b; i++) {
+                long p = primes[i];
+                if (p * p > z) {
+                    // φ(z/p_j, j-1) = 1 para los j >= i con p_j <= z, 0 para p_j > z
+                    long last = z >= primes[b] ? b : table.pi(z);
+                    return sum - (last - i + 1);
+                }
+                sum -= phi(z / p, i - 1);
+            }
+            return sum;
+        }
+
+        private long cached(long z, int b) {
+            int j = (int) ((z + 1) >>> 1); // impares < j·2: índices [0, j)
+            long[] bits = cacheBits[b];
+            int w = j >>> 6;
+            long count = cacheCounts[b][w >>> 2];
+            for (int k = w & ~3; k < w; k++) count += Long.bitCount(bits[k]);
+            if ((j & 63) != 0) count += Long.bitCount(bits[w] & ((1L << j) - 1));
+            return count;
+        }
+    }
+
+    private static long phiSmall(long z, int b) {
+        if (b == 0) return z;
+        int[] t = PHI_SMALL[b];
+        return z / PRIMORIAL * t[PRIMORIAL] + t[(int) (z % PRIMORIAL)];
+    }
+
+    /** Tablas φ(r, b) para b <= SMALL_B y 0 <= r <= PRIMORIAL. */
+    private static int[][] phiSmallTable() {
+        int[] small = {1, 2, 3, 5, 7, 11, 13};
+        int[][] t = new int[SMALL_B + 1][];
+        boolean[] alive = new boolean[PRIMORIAL + 1];
+        Arrays.fill(alive, true);
+        alive[0] = false;
+        for (int b = 1; b <= SMALL_B; b++) {
+            for (int n = small[b]; n <= PRIMORIAL; n += small[b]) alive[n] = false;
+            t[b] = new int[PRIMORIAL + 1];
+            for (int r = 1; r <= PRIMORIAL; r++) t[b][r] = t[b][r - 1] + (alive[r] ? 1 : 0);
+        }
+        return t;
+    }
+
+    /** Conteos acumulados cada 4 palabras: counts[k] = bits en 1 de words[0 .. 4k). */
+    private static int[] blockCounts(long[] words) {
+        int[] counts = new int[(words.length >>> 2) + 1];
+        int c = 0;
+        for (int w = 0; w < words.length; w++) {
+            if ((w & 3) == 0) counts[w >>> 2] = c;
+            c += Long.bitCount(words[w]);
+        }
+        if ((words.length & 3) == 0) counts[words.length >>> 2] = c;
+        return counts;
+    }
+
+    // ============================
+    // Tabla de π hasta x^(2/3)
+    // ============================
+
+    /** Un bit por impar (1 = primo) hasta limit y conteos acumulados cada 4 palabras. */
+    static final class PiTable {
+        final long limit;
+        private final long[] bits;
+        private final int[] counts;
+
+        private PiTable(long limit, long[] bits) {
+            this.limit = limit;
+            this.bits = bits;
+            this.counts = blockCounts(bits);
+        }
+
+        /** Criba los impares <= limit en bloques de segmentos repartidos entre los hilos de pool. */
+        static PiTable build(long limit, ForkJoinPool pool, int parallelism) {
+            long jHi = SegmentedSieve.endIndex(limit);
+            long words = (jHi + 63) >>> 6;
+            if (words > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("Tabla de π demasiado grande: " + limit);
+            long[] bits = new long[(int) words];
+            int[] base = SegmentedSieve.basePrimes(limit);
+            long totalSegments = (jHi + SegmentedSieve.SEGMENT_BITS - 1) / SegmentedSieve.SEGMENT_BITS;
+            long perChunk = Math.max(1, Math.min(64, totalSegments / (8L * parallelism)));
+            long chunkBits = perChunk * SegmentedSieve.SEGMENT_BITS;
+
+            List<Future<?>> futures = new ArrayList<>();
+            for (long start = 0; start < jHi; start += chunkBits) {
+                long from = start;
+                long to = Math.min(start + chunkBits, jHi);
+                futures.add(pool.submit(() -> sieveChunk(bits, from, to, base)));
+            }
+            try {
+                for (Future<?> f : futures) f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Criba de la tabla de π interrumpida", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Error en la criba de la tabla de π", e.getCause());
+            } finally {
+                for (Future<?> f : futures) f.cancel(false);
+            }
+            // el pre-cribado marca 3, 5, 7, 11 y 13 como compuestos (índices 1, 2, 3, 5, 6)
+            bits[0] |= (1L << 1) | (1L << 2) | (1L << 3) | (1L << 5) | (1L << 6);
+            // impares más allá de limit en la última palabra
+            if ((jHi & 63) != 0) bits[bits.length - 1] &= (1L << jHi) - 1;
+            return new PiTable(limit, bits);
+        }
+
+        private static void sieveChunk(long[] out, long from, long to, int[] base) {
+            SegmentedSieve.Segment seg = new SegmentedSieve.Segment();
+            seg.reset(from, base);
+            for (long start = from; start < to; start += SegmentedSieve.SEGMENT_BITS) {
+                int len = (int) Math.min(SegmentedSieve.SEGMENT_BITS, to - start);
+                seg.sieveNext(len);
+                int w0 = (int) (start >>> 6);
+                int words = (len + 63) >>> 6;
+                for (int w = 0; w < words; w++) out[w0 + w] = ~seg.bits[w];
+            }
+        }
+
+        /** π(z) para 0 <= z <= limit. */
+        long pi(long z) {
+            if (z < 2) return 0;
+            int j = (int) ((z + 1) >>> 1); // impares <= z: índices [0, j)
+            int w = j >>> 6;
+            long count = counts[w >>> 2];
+            for (int k = w & ~3; k < w; k++) count += Long.bitCount(bits[k]);
+            if ((j & 63) != 0) count += Long.bitCount(bits[w] & ((1L << j) - 1));
+            return count + 1; // el 2
+        }
+
+        /** {1, 2, 3, 5, ...}: primos <= z (z <= limit) con un 1 delante, para indexar desde 1. */
+        int[] primesUpTo(long z) {
+            int[] primes = new int[(int) pi(z) + 1];
+            primes[0] = 1;
+            primes[1] = 2;
+            int k = 2;
+            int jEnd = (int) ((z + 1) >>> 1);
+            for (int w = 0; w <= (jEnd - 1) >>> 6; w++) {
+                long m = bits[w];
+                while (m != 0) {
+                    int j = (w << 6) + Long.numberOfTrailingZeros(m);
+                    if (j >= jEnd) break;
+                    primes[k++] = 2 * j + 1;
+                    m &= m - 1;
+                }
+            }
+            return primes;
+        }
+    }
+
+    // ============================
+    // Línea de comandos
+    // ============================
+
+    /** Compara π(10^k) con los valores conocidos hasta maxExponent; devuelve si todos coinciden. */
+    static boolean check(int maxExponent, int parallelism) {
+        boolean ok = true;
+        for (int k = 0; k <= maxExponent && k < PI_POWERS_OF_TEN.length; k++) {
+            long x = 1;
+            for (int i = 0; i < k; i++) x *= 10;
+            long t0 = System.nanoTime();
+            long pi = pi(x, parallelism);
+            boolean match = pi == PI_POWERS_OF_TEN[k];
+            ok &= match;
+            System.out.printf("π(10^%d) = %d %s (%.1f ms)%n", k, pi, match ? "ok" : "ERROR, se esperaba "
+                    + PI_POWERS_OF_TEN[k], (System.nanoTime() - t0) / 1e6);
+        }
+        return ok;
+    }
+
+    public static void main(String[] args) {
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        if (args.length == 0 || args[0].equals("--check")) {
+            if (!check(14, threads)) System.exit(1);
+            return;
+        }
+        long x = args[0].contains("e") ? (long) Double.parseDouble(args[0]) : Long.parseLong(args[0]);
+        long t0 = System.nanoTime();
+        long pi = pi(x, threads);
+        System.out.printf("π(%d) = %d (%.1f ms)%n", x, pi, (System.nanoTime() - t0) / 1e6);
+    }
+}
@@ -0,0 +1,221 @@
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * PrimeGenerator.java
+ *
+ * Generación de primos (próximo primo, primo aleatorio de k bits, primo seguro) con criba
+ * incremental por ventanas, en lugar de probar candidato por candidato:
+ * - Se calculan una vez los restos r_q = inicio mod q para los primos impares q < 2^16
+ *   (reduciendo las palabras de 32 bits del inicio por productos de primos, como
+ *   SmallPrimeFilter). Con ellos se tachan en una ventana de WINDOW impares consecutivos
+ *   los múltiplos de cada q; al pasar a la ventana siguiente solo se actualizan los restos.
+ * - Solo los sobrevivientes (alrededor del 5% de los impares) llegan a la prueba completa
+ *   (Algorithm, por defecto Baillie-PSW).
+ * - Primos seguros p = 2q + 1: la misma criba tacha a la vez q ≡ 0 y q ≡ (r-1)/2 (mod r), es
+ *   decir, los q con q o 2q + 1 múltiplo de r. A los sobrevivientes se les aplica primero
+ *   base 2 a q y a p, y recién después la prueba completa a ambos.
+ * - Entradas de hasta 32 bits se resuelven en long con LongPrimality.
+ * randomPrime elige un inicio al azar y busca el siguiente primo: la distribución no es
+ * exactamente uniforme (favorece a los primos después de huecos grandes), como en la
+ * mayoría de las bibliotecas.
+ */
+public final class PrimeGenerator {
+
+    /** Impares por ventana de criba. */
+    static final int WINDOW = 1 << 13;
+
+    /** Primos impares de la criba (< 2^16). */
+    private static final int SIEVE_LIMIT = 1 << 16;
+    private static final int[] SIEVE_PRIMES = sievePrimes();
+    /** Productos de primos consecutivos de SIEVE_PRIMES < 2^31 e índice del primero de cada uno. */
+    private static final int[] GROUP_PRODUCTS;
+    private static final int[] GROUP_START;
+
+    static {
+        int[] products = new int[SIEVE_PRIMES.length];
+        int[] starts = new int[SIEVE_PRIMES.length + 1];
+        int groups = 0;
+        for (int i = 0; i < SIEVE_PRIMES.length; ) {
+            starts[groups] = i;
+            long product = SIEVE_PRIMES[i++];
+            while (i < SIEVE_PRIMES.length && product * SIEVE_PRIMES[i] < Integer.MAX_VALUE) {
+                product *= SIEVE_PRIMES[i++];
+            }
+            products[groups++] = (int) product;
+        }
+        starts[groups] = SIEVE_PRIMES.length;
+        GROUP_PRODUCTS = Arrays.copyOf(products, groups);
+        GROUP_START = Arrays.copyOf(starts, groups + 1);
+    }
+
+    private static final BigInteger TWO = BigInteger.valueOf(2);
+    private static final int DEFAULT_ROUNDS = 20;
+
+    private PrimeGenerator() {
+    }
+
+    // ============================
+    // API
+    // ============================
+
+    /** El menor primo mayor que start (como BigInteger.nextProbablePrime), con Baillie-PSW. */
+    public static BigInteger nextPrime(BigInteger start) {
+        return nextPrime(start, Algorithm.BAILLIE_PSW, DEFAULT_ROUNDS);
+    }
+
+    /** El menor primo mayor que start según alg (rounds para los probabilísticos). */
+    public static BigInteger nextPrime(BigInteger start, Algorithm alg, int rounds) {
+        if (start.bitLength() <= 32) {
+            long n = Math.max(start.longValue(), 1) + 1;
+            while (!LongPrimality.isPrime(n)) n++;
+            return BigInteger.valueOf(n);
+        }
+        Window w = new Window(firstOdd(start.add(BigInteger.ONE)), false);
+        long[] composite = new long[WINDOW / 64];
+        while (true) {
+            w.sieve(composite);
+            for (int j = nextClear(composite, 0); j < WINDOW; j = nextClear(composite, j + 1)) {
+                BigInteger candidate = w.candidate(j);
+                if (alg.test(candidate, rounds)) return candidate;
+            }
+            w.advance();
+        }
+    }
+
+    /** Primo aleatorio de exactamente bits bits (bits >= 2), con los testigos de PrimalityAllTests. */
+    public static BigInteger randomPrime(int bits) {
+        return randomPrime(bits, PrimalityAllTests.witnessSource().random());
+    }
+
+    public static BigInteger randomPrime(int bits, Random rnd) {
+        if (bits < 2) throw new IllegalArgumentException("bits debe ser >= 2: " + bits);
+        while (true) {
+            // inicio con el bit alto encendido; si el siguiente primo se pasa de bits, otro inicio
+            BigInteger start = new BigInteger(bits - 1, rnd).setBit(bits - 1);
+            BigInteger p = nextPrime(start.subtract(BigInteger.ONE));
+            if (p.bitLength() == bits) return p;
+        }
+    }
+
+    /** El menor primo seguro p = 2q + 1 (q primo) con q > start, con Baillie-PSW. */
+    public static BigInteger nextSafePrime(BigInteger start) {
+        return nextSafePrime(start, Algorithm.BAILLIE_PSW, DEFAULT_ROUNDS);
+    }
+
+    public static BigInteger nextSafePrime(BigInteger start, Algorithm alg, int rounds) {
+        if (start.bitLength() <= 32) {
+            long q = Math.max(start.longValue(), 1) + 1;
+            while (!LongPrimality.isPrime(q) || !LongPrimality.isPrime(2 * q + 1)) q++;
+            return BigInteger.valueOf(2 * q + 1);
+        }
+        Window w = new Window(firstOdd(start.add(BigInteger.ONE)), true);
+        long[] composite = new long[WINDOW / 64];
+        while (true) {
+            w.sieve(composite);
+            for (int j = nextClear(composite, 0); j < WINDOW; j = nextClear(composite, j + 1)) {
+                BigInteger q = w.candidate(j);
+                BigInteger p = q.shiftLeft(1).add(BigInteger.ONE);
+                if (PrimalityAllTests.strongProbablePrime(q, TWO) && PrimalityAllTests.strongProbablePrime(p, TWO)
+                        && alg.test(q, rounds) && alg.test(p, rounds)) {
+                    return p;
+                }
+            }
+            w.advance();
+        }
+    }
+
+    /** Primo seguro aleatorio de exactamente bits bits (bits >= 3). */
+    public static BigInteger safePrime(int bits) {
+        return safePrime(bits, PrimalityAllTests.witnessSource().random());
+    }
+
+    public static BigInteger safePrime(int bits, Random rnd) {
+        if (bits < 3) throw new IllegalArgumentException("bits debe ser >= 3: " + bits);
+        while (true) {
+            BigInteger start = new BigInteger(bits - 2, rnd).setBit(bits - 2); // q de bits - 1 bits
+            BigInteger p = nextSafePrime(start.subtract(BigInteger.ONE));
+            if (p.bitLength() == bits) return p;
+        }
+    }
+
+    // ============================
+    // Criba por ventanas
+    // ============================
+
+    /** Ventana de candidatos base + 2j, 0 <= j < WINDOW (base impar > SIEVE_LIMIT). */
+    private static final class Window {
+        private BigInteger base;
+        private final boolean safe;
+        /** base mod q de cada primo de la criba. */
+        private final int[] residues = new int[SIEVE_PRIMES.length];
+
+        Window(BigInteger base, boolean safe) {
+            this.base = base;
+            this.safe = safe;
+            int[] words = SmallPrimeFilter.toWords(base);
+            for (int g = 0; g < GROUP_PRODUCTS.length; g++) {
+                long m = GROUP_PRODUCTS[g];
+                long r = 0;
+                for (int word : words) r = ((r << 32) | (word & 0xFFFFFFFFL)) % m;
+                for (int i = GROUP_START[g]; i < GROUP_START[g + 1]; i++) residues[i] = (int) (r % SIEVE_PRIMES[i]);
+            }
+        }
+
+        /** Marca en composite los j con base + 2j (o 2(base + 2j) + 1, si safe) múltiplo de algún q. */
+        void sieve(long[] composite) {
+            Arrays.fill(composite, 0);
+            for (int i = 0; i < SIEVE_PRIMES.length; i++) {
+                int q = SIEVE_PRIMES[i];
+                long inv2 = (q + 1) >>> 1; // 2^(-1) mod q
+                // base + 2j ≡ 0  <=>  j ≡ -r / 2 (mod q)
+                cross(composite, (int) ((q - residues[i]) * inv2 % q), q);
+                if (safe) {
+                    // 2(base + 2j) + 1 ≡ 0  <=>  base + 2j ≡ (q - 1) / 2  <=>  j ≡ ((q-1)/2 - r) / 2
+                    long target = ((q - 1) / 2 - residues[i] + q) % q;
+                    cross(composite, (int) (target * inv2 % q), q);
+                }
+            }
+        }
+
+        private static void cross(long[] composite, int first, int q) {
+            for (int j = first; j < WINDOW; j += q) composite[j >>> 6] |= 1L << j;
+        }
+
+        BigInteger candidate(int j) {
+            return base.add(BigInteger.valueOf(2L * j));
+        }
+
+        /** Pasa a la ventana siguiente actualizando solo los restos. */
+        void advance() {
+            base = base.add(BigInteger.valueOf(2L * WINDOW));
+            for (int i = 0; i < SIEVE_PRIMES.length; i++) {
+                residues[i] = (int) ((residues[i] + 2L * WINDOW) % SIEVE_PRIMES[i]);
+            }
+        }
+    }
+
+    /** Primer j >= from sin marcar (WINDOW si no hay). */
+    private static int nextClear(long[] composite, int from) {
+        if (from >= WINDOW) return WINDOW;
+        int word = from >>> 6;
+        long bits = ~composite[word] & (-1L << from);
+        while (bits == 0) {
+            if (++word == composite.length) return WINDOW;
+            bits = ~composite[word];
+        }
+        return word * 64 + Long.numberOfTrailingZeros(bits);
+    }
+
+    private static BigInteger firstOdd(BigInteger n) {
+        return n.testBit(0) ? n : n.add(BigInteger.ONE);
+    }
+
+    private static int[] sievePrimes() {
+        int[] primes = new int[(int) SegmentedSieve.countPrimes(3, SIEVE_LIMIT - 1)];
+        int[] k = {0};
+        SegmentedSieve.forEachPrime(3, SIEVE_LIMIT - 1, p -> primes[k[0]++] = (int) p);
+        return primes;
+    }
+}
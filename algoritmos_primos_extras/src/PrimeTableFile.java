@@ -0,0 +1,334 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * PrimeTableFile.java
+ *
+ * Tabla de primos persistente de cualquier tamaño (no solo < 2^32 como PrimeBitmap32), para
+ * no volver a generar listas de primos:
+ * - Datos: mapa rueda-30 (Wheel30), un byte por cada 30 números (~33 GB para 10^12).
+ * - Índice disperso: por cada bloque de BLOCK_BYTES bytes (7680 números), la cantidad de
+ *   primos anteriores al bloque, como long (un 3% del tamaño de los datos).
+ * - Se lee con FileChannel.map en trozos de hasta 1 GB (un MappedByteBuffer no pasa de
+ *   2 GB): los datos quedan fuera del heap, las consultas no crean objetos y el sistema
+ *   operativo carga solo las páginas que se tocan. Sirve para tablas mucho mayores que el heap.
+ * - Consultas:
+ *   · isPrime(n): una lectura de un byte.
+ *   · primeCount(x) = π(x): una entrada del índice y hasta 32 bitCount dentro del bloque.
+ *   · nthPrime(k): búsqueda binaria en el índice (O(log bloques)) y recorrido de un bloque.
+ *   · nextPrime(x): recorre palabras de 64 bits desde x (los huecos entre primos son cortos).
+ * - build(file, limit) criba por ventanas de WINDOW_BYTES con SegmentedSieve y escribe datos e
+ *   índice a medida que avanza: el heap usado no depende del límite.
+ * Formato: "PT30", versión (int), límite (long), primos (long), BLOCK_BYTES (int), 0 (int),
+ * posición del índice (long), posición de los datos (long); índice (bloques + 1 longs) y datos,
+ * todo en little-endian.
+ *
+ * Uso: java -cp bin PrimeTableFile build tabla.pt30 10000000000
+ *      java -cp bin PrimeTableFile pi|nth|next|isprime tabla.pt30 valor
+ */
+public final class PrimeTableFile {
+
+    private static final int MAGIC = 0x50543330; // "PT30"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 48;
+    /** Bytes de datos por entrada del índice (múltiplo de 8). */
+    static final int BLOCK_BYTES = 256;
+    /** Bytes por trozo mapeado (múltiplo de BLOCK_BYTES). */
+    private static final int CHUNK_SHIFT = 30;
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+    /** Bytes de datos que el constructor criba y escribe de una vez. */
+    private static final int WINDOW_BYTES = 1 << 20;
+
+    private final long limit;
+    private final long primes;
+    private final long blocks;
+    private final ByteBuffer[] data;
+    private final ByteBuffer[] index;
+
+    private PrimeTableFile(long limit, long primes, ByteBuffer[] data, ByteBuffer[] index) {
+        this.limit = limit;
+        this.primes = primes;
+        this.blocks = blocksFor(Wheel30.bytesFor(limit));
+        this.data = data;
+        this.index = index;
+    }
+
+    private static long blocksFor(long dataBytes) {
+        return (dataBytes + BLOCK_BYTES - 1) / BLOCK_BYTES;
+    }
+
+    // ============================
+    // Construcción y apertura
+    // ============================
+
+    /** Criba [0, limit) y guarda la tabla en file (en un temporal que luego se renombra). */
+    public static void build(Path file, long limit) throws IOException {
+        if (limit < 1 || limit > SegmentedSieve.MAX_HI) throw new IllegalArgumentException("limit fuera de rango: " + limit);
+        long dataBytes = Wheel30.bytesFor(limit);
+        long blocks = blocksFor(dataBytes);
+        long indexOffset = HEADER_BYTES;
+        long dataOffset = indexOffset + (blocks + 1) * 8;
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            byte[] window = new byte[WINDOW_BYTES];
+            ByteBuffer windowBuf = ByteBuffer.wrap(window);
+            ByteBuffer indexBuf = ByteBuffer.allocate(WINDOW_BYTES / BLOCK_BYTES * 8).order(ByteOrder.LITTLE_ENDIAN);
+            long count = 0; // primos > 5 antes de la ventana
+            for (long start = 0; start < dataBytes; start += WINDOW_BYTES) {
+                int len = (int) Math.min(WINDOW_BYTES, dataBytes - start);
+                fillWindow(window, start, len, limit);
+
+                indexBuf.clear();
+                for (int b = 0; b < len; b += BLOCK_BYTES) {
+                    indexBuf.putLong(count);
+                    for (int i = b; i < Math.min(len, b + BLOCK_BYTES); i++) count += Integer.bitCount(window[i] & 0xFF);
+                }
+                indexBuf.flip();
+                writeFully(ch, indexBuf, indexOffset + start / BLOCK_BYTES * 8);
+                windowBuf.clear().limit(len);
+                writeFully(ch, windowBuf, dataOffset + start);
+            }
+            ByteBuffer tail = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            tail.putLong(count).flip();
+            writeFully(ch, tail, indexOffset + blocks * 8);
+
+            long total = count + SegmentedSieve.countSmallPrimes(0, Math.min(limit - 1, 5));
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putLong(limit).putLong(total).putInt(BLOCK_BYTES).putInt(0)
+                    .putLong(indexOffset).putLong(dataOffset).flip();
+            writeFully(ch, header, 0);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Bytes [start, start + len) del mapa rueda-30 de [0, limit). */
+    private static void fillWindow(byte[] window, long start, int len, long limit) {
+        java.util.Arrays.fill(window, 0, len, (byte) 0);
+        long lo = Math.max(7, start * 30);
+        long hi = Math.min(limit, (start + len) * 30) - 1;
+        if (lo > hi) return;
+        SegmentedSieve.forEachPrime(lo, hi, p -> {
+            long byteIndex = p / 30;
+            window[(int) (byteIndex - start)] |= Wheel30.BIT_OF_RESIDUE[(int) (p - byteIndex * 30)];
+        });
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) position += ch.write(buf, position);
+    }
+
+    /** Abre y mapea la tabla (solo lectura); nada se copia al heap. */
+    public static PrimeTableFile open(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (ch.read(header, header.position()) < 0) break;
+            }
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("No es una tabla PrimeTableFile: " + file);
+            }
+            long limit = header.getLong();
+            long primes = header.getLong();
+            int blockBytes = header.getInt();
+            header.getInt();
+            long indexOffset = header.getLong();
+            long dataOffset = header.getLong();
+            long dataBytes = Wheel30.bytesFor(limit);
+            long indexBytes = (blocksFor(dataBytes) + 1) * 8;
+            if (limit < 1 || blockBytes != BLOCK_BYTES || indexOffset != HEADER_BYTES
+                    || dataOffset != indexOffset + indexBytes || ch.size() < dataOffset + dataBytes) {
+                throw new IOException("Tabla PrimeTableFile truncada o dañada: " + file);
+            }
+            // los mapeos siguen siendo válidos después de cerrar el canal
+            return new PrimeTableFile(limit, primes, mapChunks(ch, dataOffset, dataBytes),
+                    mapChunks(ch, indexOffset, indexBytes));
+        }
+    }
+
+    private static ByteBuffer[] mapChunks(FileChannel ch, long offset, long size) throws IOException {
+        int chunks = (int) ((size + CHUNK_MASK) >>> CHUNK_SHIFT);
+        ByteBuffer[] result = new ByteBuffer[Math.max(1, chunks)];
+        for (int c = 0; c < result.length; c++) {
+            long from = (long) c << CHUNK_SHIFT;
+            long len = Math.min(1L << CHUNK_SHIFT, size - from);
+            MappedByteBuffer m = ch.map(FileChannel.MapMode.READ_ONLY, offset + from, Math.max(0, len));
+            result[c] = m.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return result;
+    }
+
+    /** Carga en memoria todas las páginas mapeadas (consultas sin fallos de página). */
+    public PrimeTableFile load() {
+        for (ByteBuffer b : data) ((MappedByteBuffer) b).load();
+        for (ByteBuffer b : index) ((MappedByteBuffer) b).load();
+        return this;
+    }
+
+    // ============================
+    // Lectura
+    // ============================
+
+    private int dataByte(long i) {
+        return data[(int) (i >>> CHUNK_SHIFT)].get((int) (i & CHUNK_MASK)) & 0xFF;
+    }
+
+    /** 8 bytes de datos desde i (múltiplo de 8; no cruza trozos). */
+    private long dataLong(long i) {
+        return data[(int) (i >>> CHUNK_SHIFT)].getLong((int) (i & CHUNK_MASK));
+    }
+
+    /** Primos > 5 en los bloques anteriores a block (block <= blocks). */
+    private long indexEntry(long block) {
+        long pos = block * 8;
+        return index[(int) (pos >>> CHUNK_SHIFT)].getLong((int) (pos & CHUNK_MASK));
+    }
+
+    private long dataBytes() {
+        return Wheel30.bytesFor(limit);
+    }
+
+    // ============================
+    // Consultas
+    // ============================
+
+    /** Límite (exclusivo) cubierto por la tabla. */
+    public long limit() {
+        return limit;
+    }
+
+    /** Cantidad de primos < limit(). */
+    public long primeCount() {
+        return primes;
+    }
+
+    /** Primalidad de 0 <= n < limit(). */
+    public boolean isPrime(long n) {
+        checkRange(n);
+        long i = n / 30;
+        int mask = Wheel30.BIT_OF_RESIDUE[(int) (n - i * 30)];
+        if (mask == 0) return n == 2 || n == 3 || n == 5;
+        return (dataByte(i) & mask) != 0;
+    }
+
+    /** π(x): cantidad de primos <= x, para 0 <= x < limit(). */
+    public long primeCount(long x) {
+        checkRange(x);
+        long small = x >= 5 ? 3 : x >= 3 ? 2 : x >= 2 ? 1 : 0;
+        long i = x / 30;
+        long block = i / BLOCK_BYTES;
+        long count = indexEntry(block);
+        long j = block * BLOCK_BYTES;
+        for (; j + 8 <= i; j += 8) count += Long.bitCount(dataLong(j));
+        for (; j < i; j++) count += Integer.bitCount(dataByte(j));
+        // bits del byte de x con resto <= x mod 30
+        int r = (int) (x - i * 30);
+        count += Integer.bitCount(dataByte(i) & ((1 << residuesUpTo(r)) - 1));
+        return small + count;
+    }
+
+    /** El k-ésimo primo (nthPrime(1) = 2), para 1 <= k <= primeCount(). */
+    public long nthPrime(long k) {
+        if (k < 1 || k > primes) throw new IllegalArgumentException("k fuera de la tabla: " + k);
+        if (k <= 3) return k == 1 ? 2 : k == 2 ? 3 : 5;
+        long target = k - 3; // posición entre los bits de la rueda (1 = primero)
+        // último bloque con indexEntry(b) < target
+        long lo = 0;
+        long hi = blocks - 1;
+        while (lo < hi) {
+            long mid = (lo + hi + 1) >>> 1;
+            if (indexEntry(mid) < target) lo = mid;
+            else hi = mid - 1;
+        }
+        long remaining = target - indexEntry(lo);
+        long j = lo * BLOCK_BYTES;
+        long end = Math.min(dataBytes(), j + BLOCK_BYTES);
+        while (j + 8 <= end) {
+            int c = Long.bitCount(dataLong(j));
+            if (c >= remaining) break;
+            remaining -= c;
+            j += 8;
+        }
+        while (true) {
+            int b = dataByte(j);
+            int c = Integer.bitCount(b);
+            if (c >= remaining) {
+                for (int s = 1; s < remaining; s++) b &= b - 1;
+                return Wheel30.valueOf(j, Integer.numberOfTrailingZeros(b));
+            }
+            remaining -= c;
+            j++;
+        }
+    }
+
+    /** El menor primo mayor que x (0 <= x < limit()), o -1 si no está en la tabla. */
+    public long nextPrime(long x) {
+        checkRange(x);
+        if (x < 5) {
+            long p = x < 2 ? 2 : x < 3 ? 3 : 5;
+            return p < limit ? p : -1;
+        }
+        long i = x / 30;
+        int r = (int) (x - i * 30);
+        // bits del byte de x con resto > r
+        int b = dataByte(i) & ~((1 << residuesUpTo(r)) - 1);
+        long total = dataBytes();
+        long j = i;
+        while (b == 0) {
+            j++;
+            if (j >= total) return -1;
+            if ((j & 7) == 0) {
+                // palabras completas de 8 bytes (240 números) mientras estén vacías
+                while (j + 8 <= total && dataLong(j) == 0) j += 8;
+                if (j >= total) return -1;
+            }
+            b = dataByte(j);
+        }
+        long p = Wheel30.valueOf(j, Integer.numberOfTrailingZeros(b));
+        return p < limit ? p : -1;
+    }
+
+    /** Cantidad de restos de la rueda (1, 7, 11, ...) menores o iguales que r (0 <= r < 30). */
+    private static int residuesUpTo(int r) {
+        int c = 0;
+        while (c < 8 && Wheel30.RESIDUES[c] <= r) c++;
+        return c;
+    }
+
+    private void checkRange(long n) {
+        if (n < 0 || n >= limit) throw new IllegalArgumentException("n fuera de la tabla: " + n);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Uso: build|pi|nth|next|isprime archivo valor");
+            System.exit(2);
+        }
+        Path file = Paths.get(args[1]);
+        long value = Long.parseLong(args[2]);
+        long t0 = System.nanoTime();
+        if (args[0].equals("build")) {
+            build(file, value);
+            System.out.printf("%s: %d primos < %d (%.1f s)%n", file, open(file).primeCount(), value,
+                    (System.nanoTime() - t0) / 1e9);
+            return;
+        }
+        PrimeTableFile table = open(file);
+        switch (args[0]) {
+            case "pi": System.out.println(table.primeCount(value)); break;
+            case "nth": System.out.println(table.nthPrime(value)); break;
+            case "next": System.out.println(table.nextPrime(value)); break;
+            case "isprime": System.out.println(table.isPrime(value)); break;
+            default: throw new IllegalArgumentException("Comando desconocido: " + args[0]);
+        }
+    }
+}
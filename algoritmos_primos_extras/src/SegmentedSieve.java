@@ -0,0 +1,346 @@
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * SegmentedSieve.java
+ *
+ * Criba de Eratóstenes segmentada para enumerar y contar primos en un rango [lo, hi].
+ * - Solo se representan los impares: el bit j corresponde al número 2j + 1
+ *   (bit en 1 = compuesto).
+ * - Los segmentos ocupan 32 KB (tamaño típico de la caché L1 de datos).
+ * - Pre-cribado con rueda: los múltiplos de 3, 5, 7, 11 y 13 se copian de un patrón
+ *   precalculado en lugar de tacharse uno por uno.
+ * - Memoria O(sqrt(hi)): solo se guardan los primos base hasta sqrt(hi) y un segmento.
+ *
+ * Complementa a PrimalityAllTests, que prueba números de uno en uno.
+ */
+public final class SegmentedSieve {
+
+    /** Bytes por segmento (caché L1). */
+    static final int SEGMENT_BYTES = 32 * 1024;
+    /** Impares representados por segmento. */
+    static final int SEGMENT_BITS = SEGMENT_BYTES * 8;
+    static final int SEGMENT_WORDS = SEGMENT_BYTES / 8;
+
+    /** Límite superior admitido (mantiene sqrt(hi) < 2^30 y los índices en int). */
+    public static final long MAX_HI = 1L << 60;
+
+    /** Primos de la rueda de pre-cribado (además del 2, implícito al guardar solo impares). */
+    private static final int[] WHEEL_PRIMES = {3, 5, 7, 11, 13};
+    /** Primos menores que 17: el pre-cribado los marca como compuestos y se tratan aparte. */
+    private static final long[] SMALL_PRIMES = {2, 3, 5, 7, 11, 13};
+    /** Primer primo que se tacha explícitamente en cada segmento. */
+    private static final int FIRST_SIEVING_PRIME = 17;
+
+    /** Periodo del patrón en palabras: 3·5·7·11·13 = 15015 (múltiplo de 64 bits por palabra). */
+    private static final int PATTERN_WORDS = 3 * 5 * 7 * 11 * 13;
+    private static final long[] PATTERN = buildPattern();
+
+    private SegmentedSieve() {
+    }
+
+    // ============================
+    // API pública
+    // ============================
+
+    /** Cantidad de primos p con lo <= p <= hi. */
+    public static long countPrimes(long lo, long hi) {
+        checkRange(lo, hi);
+        long count = countSmallPrimes(lo, hi);
+        long jLo = firstIndex(lo);
+        long jHi = endIndex(hi);
+        if (jLo >= jHi) return count;
+
+        int[] base = basePrimes(hi);
+        Segment seg = new Segment();
+        seg.reset(jLo & ~63L, base);
+        for (long start = jLo & ~63L; start < jHi; start += SEGMENT_BITS) {
+            int len = (int) Math.min(SEGMENT_BITS, jHi - start);
+            seg.sieveNext(len);
+            count += seg.count((int) Math.max(jLo - start, 0), len);
+        }
+        return count;
+    }
+
+    /** Llama a action con cada primo de [lo, hi], en orden creciente. */
+    public static void forEachPrime(long lo, long hi, LongConsumer action) {
+        checkRange(lo, hi);
+        forEachSmallPrime(lo, hi, action);
+        long jLo = firstIndex(lo);
+        long jHi = endIndex(hi);
+        if (jLo >= jHi) return;
+
+        int[] base = basePrimes(hi);
+        Segment seg = new Segment();
+        seg.reset(jLo & ~63L, base);
+        for (long start = jLo & ~63L; start < jHi; start += SEGMENT_BITS) {
+            int len = (int) Math.min(SEGMENT_BITS, jHi - start);
+            seg.sieveNext(len);
+            seg.forEach((int) Math.max(jLo - start, 0), len, action);
+        }
+    }
+
+    /**
+     * Flujo ordenado de los primos de [lo, hi]. Se criba de forma perezosa,
+     * un segmento a la vez, así que la memoria no depende del tamaño del rango.
+     */
+    public static LongStream primes(long lo, long hi) {
+        checkRange(lo, hi);
+        return StreamSupport.longStream(new PrimeSpliterator(lo, hi), false);
+    }
+
+    // ============================
+    // Helpers (visibles en el paquete para las variantes paralelas)
+    // ============================
+
+    static void checkRange(long lo, long hi) {
+        if (lo < 0 || hi > MAX_HI) {
+            throw new IllegalArgumentException("El rango debe cumplir 0 <= lo y hi <= 2^60");
+        }
+    }
+
+    /** Índice del primer impar >= lo. */
+    static long firstIndex(long lo) {
+        return lo >>> 1;
+    }
+
+    /** Índice (exclusivo) siguiente al último impar <= hi. */
+    static long endIndex(long hi) {
+        return hi < 0 ? 0 : (hi + 1) >>> 1;
+    }
+
+    /** Cantidad de primos de SMALL_PRIMES dentro de [lo, hi]. */
+    static int countSmallPrimes(long lo, long hi) {
+        int count = 0;
+        for (long p : SMALL_PRIMES) {
+            if (p >= lo && p <= hi) count++;
+        }
+        return count;
+    }
+
+    /** Primos de SMALL_PRIMES dentro de [lo, hi], en orden. */
+    static void forEachSmallPrime(long lo, long hi, LongConsumer action) {
+        for (long p : SMALL_PRIMES) {
+            if (p >= lo && p <= hi) action.accept(p);
+        }
+    }
+
+    /** Raíz cuadrada entera: mayor r con r*r <= n (n >= 0). */
+    static long isqrt(long n) {
+        long r = (long) Math.sqrt((double) n);
+        while (r * r > n) r--;
+        while ((r + 1) * (r + 1) <= n) r++;
+        return r;
+    }
+
+    /**
+     * Primos impares 17 <= p <= sqrt(hi), obtenidos con una criba simple de impares.
+     * Son los únicos que hace falta tachar en los segmentos.
+     */
+    static int[] basePrimes(long hi) {
+        int limit = (int) isqrt(Math.max(hi, 0));
+        if (limit < FIRST_SIEVING_PRIME) return new int[0];
+        int bits = (limit - 1) / 2 + 1; // impares 1, 3, ..., <= limit
+        long[] composite = new long[(bits + 63) >>> 6];
+        for (int j = 1; j < bits; j++) {
+            if ((composite[j >>> 6] & (1L << j)) != 0) continue;
+            long p = 2L * j + 1;
+            for (long k = (p * p - 1) / 2; k < bits; k += p) {
+                composite[(int) (k >>> 6)] |= 1L << k;
+            }
+        }
+        int from = (FIRST_SIEVING_PRIME - 1) / 2;
+        int size = 0;
+        for (int j = from; j < bits; j++) {
+            if ((composite[j >>> 6] & (1L << j)) == 0) size++;
+        }
+        int[] primes = new int[size];
+        size = 0;
+        for (int j = from; j < bits; j++) {
+            if ((composite[j >>> 6] & (1L << j)) == 0) primes[size++] = 2 * j + 1;
+        }
+        return primes;
+    }
+
+    private static long[] buildPattern() {
+        long[] words = new long[PATTERN_WORDS];
+        long bits = (long) PATTERN_WORDS * 64;
+        for (int p : WHEEL_PRIMES) {
+            // impares múltiplos de p: 2j + 1 ≡ 0 (mod p)  <=>  j ≡ (p - 1) / 2 (mod p)
+            for (long j = (p - 1) / 2; j < bits; j += p) {
+                words[(int) (j >>> 6)] |= 1L << j;
+            }
+        }
+        return words;
+    }
+
+    // ============================
+    // Segmento de criba
+    // ============================
+
+    /**
+     * Un segmento de SEGMENT_BITS impares. Se reutiliza entre llamadas, así que cada
+     * hilo debe tener el suyo. Para segmentos contiguos (reset + sieveNext) guarda el
+     * desplazamiento del siguiente múltiplo de cada primo base y evita una división
+     * por primo en cada segmento.
+     */
+    static final class Segment {
+        final long[] bits = new long[SEGMENT_WORDS];
+        /** Índice del primer impar del segmento (múltiplo de 64). */
+        long start;
+        /** Impares válidos en el segmento. */
+        int length;
+
+        private int[] base = new int[0];
+        /** Siguiente índice a tachar de cada primo base, relativo al próximo segmento. */
+        private int[] offsets = new int[0];
+        /** Primos base cuyo desplazamiento ya se calculó (su cuadrado ya se alcanzó). */
+        private int active;
+        /** Índice de inicio del próximo segmento contiguo. */
+        private long next;
+
+        /** Prepara el cribado de segmentos contiguos desde el índice start (múltiplo de 64). */
+        void reset(long start, int[] basePrimes) {
+            this.base = basePrimes;
+            if (offsets.length < basePrimes.length) offsets = new int[basePrimes.length];
+            this.active = 0;
+            this.next = start;
+        }
+
+        /** Criba el siguiente segmento contiguo de length impares. */
+        void sieveNext(int length) {
+            this.start = next;
+            this.length = length;
+            this.next = start + length;
+            int words = (length + 63) >>> 6;
+
+            // pre-cribado con la rueda 3·5·7·11·13
+            int pw = (int) ((start >>> 6) % PATTERN_WORDS);
+            for (int i = 0; i < words; ) {
+                int n = Math.min(words - i, PATTERN_WORDS - pw);
+                System.arraycopy(PATTERN, pw, bits, i, n);
+                i += n;
+                pw = 0;
+            }
+            if (start == 0) bits[0] |= 1L; // el 1 no es primo
+
+            // activa los primos base cuyo cuadrado cae en este segmento o antes
+            long lowNum = 2 * start + 1;
+            long highNum = 2 * (start + length - 1) + 1;
+            while (active < base.length && (long) base[active] * base[active] <= highNum) {
+                int p = base[active];
+                long first = (long) p * p;
+                if (first < lowNum) {
+                    first = (lowNum + p - 1) / p * p;
+                    if ((first & 1) == 0) first += p; // solo múltiplos impares
+                }
+                offsets[active++] = (int) ((first - 1) / 2 - start);
+            }
+
+            // entre múltiplos impares consecutivos hay 2p, es decir p índices
+            for (int i = 0; i < active; i++) {
+                int p = base[i];
+                int j = offsets[i];
+                for (; j < length; j += p) {
+                    bits[j >>> 6] |= 1L << j;
+                }
+                offsets[i] = j - length;
+            }
+        }
+
+        /** Primos con índice relativo en [from, to). */
+        int count(int from, int to) {
+            if (from >= to) return 0;
+            int first = from >>> 6;
+            int last = (to - 1) >>> 6;
+            int count = 0;
+            for (int w = first; w <= last; w++) {
+                count += Long.bitCount(primeMask(w, first, last, from, to));
+            }
+            return count;
+        }
+
+        /** Llama a action con cada primo con índice relativo en [from, to), en orden. */
+        void forEach(int from, int to, LongConsumer action) {
+            if (from >= to) return;
+            int first = from >>> 6;
+            int last = (to - 1) >>> 6;
+            for (int w = first; w <= last; w++) {
+                long m = primeMask(w, first, last, from, to);
+                long base = 2 * (start + ((long) w << 6)) + 1;
+                while (m != 0) {
+                    action.accept(base + 2L * Long.numberOfTrailingZeros(m));
+                    m &= m - 1;
+                }
+            }
+        }
+
+        /** Copia los primos con índice relativo en [from, to) en out; devuelve cuántos. */
+        int collect(int from, int to, long[] out, int offset) {
+            if (from >= to) return 0;
+            int first = from >>> 6;
+            int last = (to - 1) >>> 6;
+            int size = offset;
+            for (int w = first; w <= last; w++) {
+                long m = primeMask(w, first, last, from, to);
+                long base = 2 * (start + ((long) w << 6)) + 1;
+                while (m != 0) {
+                    out[size++] = base + 2L * Long.numberOfTrailingZeros(m);
+                    m &= m - 1;
+                }
+            }
+            return size - offset;
+        }
+
+        /** Bits de primos (invertidos) de la palabra w, recortados a [from, to). */
+        private long primeMask(int w, int first, int last, int from, int to) {
+            long m = ~bits[w];
+            if (w == first) m &= -1L << (from & 63);
+            if (w == last) m &= -1L >>> (63 - ((to - 1) & 63));
+            return m;
+        }
+    }
+
+    // ============================
+    // Flujo perezoso
+    // ============================
+
+    private static final class PrimeSpliterator extends Spliterators.AbstractLongSpliterator {
+        private final long jLo;
+        private final long jHi;
+        private final Segment seg = new Segment();
+        private long next; // inicio del siguiente segmento
+        private long[] buffer;
+        private int pos;
+        private int size;
+
+        PrimeSpliterator(long lo, long hi) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.DISTINCT
+                    | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+            this.jLo = firstIndex(lo);
+            this.jHi = endIndex(hi);
+            this.next = jLo & ~63L;
+            seg.reset(next, jLo < jHi ? basePrimes(hi) : new int[0]);
+            // el primer "segmento" son los primos menores que 17
+            this.buffer = new long[SEGMENT_BITS / 2];
+            forEachSmallPrime(lo, hi, p -> buffer[size++] = p);
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            while (pos == size) {
+                if (next >= jHi) return false;
+                int len = (int) Math.min(SEGMENT_BITS, jHi - next);
+                seg.sieveNext(len);
+                pos = 0;
+                size = seg.collect((int) Math.max(jLo - next, 0), len, buffer, 0);
+                next += SEGMENT_BITS;
+            }
+            action.accept(buffer[pos++]);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SmallPrimeFilter.java
+ *
+ * Filtro de división por primos pequeños que se aplica antes de las pruebas
+ * probabilísticas (la mayoría de los compuestos aleatorios tiene un factor < 1000,
+ * así que se ahorran casi todas las llamadas a modPow en flujos con muchos compuestos).
+ * - La tabla son los primeros tableSize primos (configurable; por defecto los primos < 1000).
+ * - Para n de hasta 63 bits se divide directamente en long.
+ * - Para BigInteger, los primos se agrupan en productos < 2^31 y cada producto se reduce
+ *   recorriendo las palabras de 32 bits de n (sin crear BigIntegers intermedios).
+ * - Si la tabla es grande frente a n (primorial con más de 40 veces los bits de n), resulta
+ *   más barato un único gcd(n, P) contra el primorial P, que se calcula con un árbol de productos.
+ * - checked() y rejected() cuentan cuántas entradas se revisaron y cuántas descartó el filtro
+ *   por un factor de la tabla (n < 2 es COMPOSITE pero no cuenta como descarte).
+ *
+ * PrimalityAllTests usa la instancia compartida (shared()); configure() la reemplaza.
+ */
+public final class SmallPrimeFilter {
+
+    /** Resultado del filtro. */
+    public enum Verdict {
+        /** Tiene un factor primo en la tabla (o es menor que 2). */
+        COMPOSITE,
+        /** Es primo con certeza (está en la tabla o es menor que el cuadrado del mayor primo). */
+        PRIME,
+        /** El filtro no decide: hay que ejecutar la prueba completa. */
+        UNKNOWN
+    }
+
+    /** Por defecto: los 168 primos menores que 1000. */
+    public static final int DEFAULT_TABLE_SIZE = 168;
+
+    /**
+     * Se usa el gcd con el primorial cuando este tiene más de GCD_RATIO veces los bits de n
+     * (medido: por debajo, la reducción por grupos es más barata que el gcd binario).
+     */
+    private static final int GCD_RATIO = 40;
+
+    private static volatile SmallPrimeFilter shared = new SmallPrimeFilter(DEFAULT_TABLE_SIZE);
+
+    private final int[] primes;
+    private final long largest;
+    /** Productos de primos impares consecutivos, cada uno < 2^31. */
+    private final int[] groupProducts;
+    /** Índice en primes del primer primo de cada grupo (con centinela al final). */
+    private final int[] groupStart;
+    /** log2 del primorial de la tabla (para elegir entre grupos y gcd sin calcularlo). */
+    private final double primorialBits;
+    private volatile BigInteger primorial;
+
+    private final LongAdder checked = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /** Filtro con los primeros tableSize primos (tableSize >= 1). */
+    public SmallPrimeFilter(int tableSize) {
+        if (tableSize < 1) throw new IllegalArgumentException("tableSize debe ser >= 1");
+        this.primes = firstPrimes(tableSize);
+        this.largest = primes[primes.length - 1];
+
+        int[] products = new int[primes.length];
+        int[] starts = new int[primes.length + 1];
+        int groups = 0;
+        for (int i = 1; i < primes.length; ) { // el 2 se revisa con el bit bajo
+            starts[groups] = i;
+            long product = primes[i++];
+            while (i < primes.length && product * primes[i] < Integer.MAX_VALUE) {
+                product *= primes[i++];
+            }
+            products[groups++] = (int) product;
+        }
+        starts[groups] = primes.length;
+        this.groupProducts = Arrays.copyOf(products, groups);
+        this.groupStart = Arrays.copyOf(starts, groups + 1);
+
+        double bits = 0;
+        for (int p : primes) bits += Math.log(p) / Math.log(2);
+        this.primorialBits = bits;
+    }
+
+    /** Instancia usada por PrimalityAllTests y PrimalityBatch. */
+    public static SmallPrimeFilter shared() {
+        return shared;
+    }
+
+    /** Reemplaza la instancia compartida por una con los primeros tableSize primos. */
+    public static void configure(int tableSize) {
+        shared = new SmallPrimeFilter(tableSize);
+    }
+
+    public int tableSize() {
+        return primes.length;
+    }
+
+    public long largestPrime() {
+        return largest;
+    }
+
+    /** Entradas revisadas desde la creación (o el último resetCounters). */
+    public long checked() {
+        return checked.sum();
+    }
+
+    /** Entradas descartadas como compuestas por el filtro (las n < 2 no cuentan). */
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    public void resetCounters() {
+        checked.reset();
+        rejected.reset();
+    }
+
+    // ============================
+    // Filtro
+    // ============================
+
+    public Verdict check(BigInteger n) {
+        if (n.bitLength() <= 63) return check(n.longValue());
+        checked.increment();
+        boolean factor;
+        if (!n.testBit(0)) {
+            factor = true;
+        } else if (primorialBits > (double) GCD_RATIO * n.bitLength()) {
+            factor = !n.gcd(primorial()).equals(BigInteger.ONE);
+        } else {
+            factor = factorByGroups(n) != 0;
+        }
+        if (factor) {
+            rejected.increment();
+            return Verdict.COMPOSITE;
+        }
+        return Verdict.UNKNOWN; // n >= 2^63 > largest^2
+    }
+
+    public Verdict check(long n) {
+        checked.increment();
+        // no son primos, pero no los descarta la tabla: no cuentan en rejected()
+        if (n < 2) return Verdict.COMPOSITE;
+        if (n <= largest) {
+            if (Arrays.binarySearch(primes, (int) n) >= 0) return Verdict.PRIME;
+            rejected.increment();
+            return Verdict.COMPOSITE;
+        }
+        for (int p : primes) {
+            if ((long) p * p > n) return Verdict.PRIME;
+            if (n % p == 0) {
+                rejected.increment();
+                return Verdict.COMPOSITE;
+            }
+        }
+        return n / largest < largest ? Verdict.PRIME : Verdict.UNKNOWN;
+    }
+
+    /**
+     * Menor primo de la tabla que divide a n (n > 0), o 0 si ninguno. No cuenta en
+     * checked/rejected: es para quien necesita el factor (Factorizer), no un veredicto.
+     */
+    int smallestFactor(BigInteger n) {
+        if (!n.testBit(0)) return 2;
+        return factorByGroups(n);
+    }
+
+    /**
+     * Reduce n módulo cada producto de grupo leyendo sus palabras de 32 bits (Horner);
+     * devuelve el menor primo impar de la tabla que divide a n, o 0.
+     */
+    private int factorByGroups(BigInteger n) {
+        int[] words = toWords(n);
+        for (int g = 0; g < groupProducts.length; g++) {
+            long m = groupProducts[g];
+            long r = 0;
+            for (int w : words) {
+                r = ((r << 32) | (w & 0xFFFFFFFFL)) % m;
+            }
+            for (int i = groupStart[g]; i < groupStart[g + 1]; i++) {
+                if (r % primes[i] == 0) return primes[i];
+            }
+        }
+        return 0;
+    }
+
+    /** Palabras de 32 bits de n (positivo), de la más significativa a la menos. */
+    static int[] toWords(BigInteger n) {
+        byte[] bytes = n.toByteArray();
+        int[] words = new int[(bytes.length + 3) / 4];
+        for (int i = bytes.length - 1, k = 0; i >= 0; i--, k++) {
+            words[words.length - 1 - k / 4] |= (bytes[i] & 0xFF) << (8 * (k % 4));
+        }
+        return words;
+    }
+
+    /** Producto de todos los primos de la tabla (se calcula una vez, con árbol de productos). */
+    BigInteger primorial() {
+        BigInteger p = primorial;
+        if (p == null) {
+            p = productTree(0, primes.length);
+            primorial = p;
+        }
+        return p;
+    }
+
+    private BigInteger productTree(int from, int to) {
+        if (to - from <= 16) {
+            BigInteger p = BigInteger.ONE;
+            for (int i = from; i < to; i++) p = p.multiply(BigInteger.valueOf(primes[i]));
+            return p;
+        }
+        int mid = (from + to) >>> 1;
+        return productTree(from, mid).multiply(productTree(mid, to));
+    }
+
+    /** Copia de la tabla de primos (en orden creciente, empezando en 2). */
+    int[] primes() {
+        return primes.clone();
+    }
+
+    private static int[] firstPrimes(int count) {
+        // p_k < k (ln k + ln ln k) para k >= 6
+        double k = Math.max(count, 6);
+        long bound = (long) (k * (Math.log(k) + Math.log(Math.log(k)))) + 1;
+        return SegmentedSieve.primes(2, bound).limit(count).mapToInt(p -> (int) p).toArray();
+    }
+}
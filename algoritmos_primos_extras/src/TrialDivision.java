@@ -0,0 +1,175 @@
+/**
+ * TrialDivision.java
+ *
+ * División de prueba en long (los métodos 1..5 de PrimalityAllTests son para int y quedan
+ * como están, para comparar). Pensada para n de hasta ~10^14 (raíz ~10^7):
+ * - isqrt(n): raíz entera exacta sin desbordar (la cota se calcula una vez, no por iteración,
+ *   y no se usa i * i <= n, que desborda cerca de Long.MAX_VALUE).
+ * - isPrimeWheel30 / isPrimeWheel210: solo se prueban divisores coprimos con 30 (8 de cada
+ *   30) o con 210 (48 de cada 210), saltando con la tabla de distancias de la rueda.
+ * - isPrimeTable: divide solo por primos, con una tabla que se criba una vez y se amplía
+ *   cuando hace falta. Cada primo p guarda p^-1 mod 2^64 y floor((2^64-1)/p): p divide a n
+ *   si y solo si n·p^-1 mod 2^64 <= floor((2^64-1)/p) (Granlund-Montgomery), una
+ *   multiplicación en lugar de una división.
+ * - isPrime(n) elige la tabla si ya cubre la raíz de n y la rueda 210 si no.
+ */
+public final class TrialDivision {
+
+    /** Residuos coprimos con 210 y distancias entre consecutivos (la última vuelve a 211). */
+    private static final int[] WHEEL210_GAPS = wheel210Gaps();
+
+    /** Mayor raíz que cubre la tabla: 2^25 (unos 2 millones de primos, ~40 MB); n < 2^50. */
+    public static final long MAX_TABLE_LIMIT = 1L << 25;
+
+    /** Tabla de primos desde 11 con su inverso y su límite de divisibilidad. */
+    private static volatile Table table = new Table(0);
+
+    private TrialDivision() {
+    }
+
+    /** floor(sqrt(n)) para n >= 0, exacto en todo el rango de long. */
+    public static long isqrt(long n) {
+        if (n < 0) throw new IllegalArgumentException("n debe ser >= 0: " + n);
+        long r = (long) Math.sqrt((double) n); // puede errar en ±1 por el redondeo del double
+        while (r > 0 && r > n / r) r--;
+        while (r + 1 <= n / (r + 1)) r++;
+        return r;
+    }
+
+    /** División de prueba con la mejor variante disponible. */
+    public static boolean isPrime(long n) {
+        Table t = table;
+        if (n > 1 && t.limit >= isqrt(n)) return isPrimeTable(n, t);
+        return isPrimeWheel210(n);
+    }
+
+    // ============================
+    // Ruedas
+    // ============================
+
+    /** Divisores 2, 3, 5 y luego solo los de resto 1, 7, 11, 13, 17, 19, 23, 29 módulo 30. */
+    public static boolean isPrimeWheel30(long n) {
+        if (n < 2) return false;
+        if (n % 2 == 0) return n == 2;
+        if (n % 3 == 0) return n == 3;
+        if (n % 5 == 0) return n == 5;
+        long limit = isqrt(n);
+        long d = 7;
+        int g = 1; // 7 es el residuo de índice 1 en Wheel30.RESIDUES
+        while (d <= limit) {
+            if (n % d == 0) return false;
+            d += Wheel30.GAPS[g];
+            g = (g + 1) & 7;
+        }
+        return true;
+    }
+
+    /** Divisores 2, 3, 5, 7 y luego solo los coprimos con 210 (48 de cada 210). */
+    public static boolean isPrimeWheel210(long n) {
+        if (n < 2) return false;
+        if (n % 2 == 0) return n == 2;
+        if (n % 3 == 0) return n == 3;
+        if (n % 5 == 0) return n == 5;
+        if (n % 7 == 0) return n == 7;
+        long limit = isqrt(n);
+        long d = 11;
+        int g = 0;
+        while (d <= limit) {
+            if (n % d == 0) return false;
+            d += WHEEL210_GAPS[g];
+            if (++g == WHEEL210_GAPS.length) g = 0;
+        }
+        return true;
+    }
+
+    private static int[] wheel210Gaps() {
+        int[] residues = new int[48];
+        int k = 0;
+        for (int r = 11; r < 221; r++) { // de 11 a 211 (= 1 + 210)
+            if (r % 2 != 0 && r % 3 != 0 && r % 5 != 0 && r % 7 != 0) residues[k++] = r;
+            if (k == 48) break;
+        }
+        int[] gaps = new int[48];
+        for (int i = 0; i < 47; i++) gaps[i] = residues[i + 1] - residues[i];
+        gaps[47] = residues[0] + 210 - residues[47];
+        return gaps;
+    }
+
+    // ============================
+    // Tabla de primos
+    // ============================
+
+    /**
+     * Prepara la tabla para n de hasta maxN (primos <= isqrt(maxN), como mucho
+     * MAX_TABLE_LIMIT); no la achica.
+     */
+    public static void ensureTable(long maxN) {
+        growTable(isqrt(Math.max(maxN, 0)));
+    }
+
+    private static synchronized void growTable(long limit) {
+        limit = Math.min(limit, MAX_TABLE_LIMIT);
+        if (table.limit < limit) table = new Table(limit);
+    }
+
+    /** Límite (raíz) que cubre la tabla actual. */
+    public static long tableLimit() {
+        return table.limit;
+    }
+
+    /**
+     * División solo por primos; si la tabla no cubre la raíz de n la amplía (al menos al
+     * doble). Si la raíz pasa de MAX_TABLE_LIMIT usa la rueda 210.
+     */
+    public static boolean isPrimeTable(long n) {
+        if (n < 2) return false;
+        long root = isqrt(n);
+        if (root > MAX_TABLE_LIMIT) return isPrimeWheel210(n);
+        Table t = table;
+        if (t.limit < root) {
+            growTable(Math.max(root, 2 * t.limit));
+            t = table;
+        }
+        return isPrimeTable(n, t);
+    }
+
+    private static boolean isPrimeTable(long n, Table t) {
+        if (n % 2 == 0) return n == 2;
+        if (n % 3 == 0) return n == 3;
+        if (n % 5 == 0) return n == 5;
+        if (n % 7 == 0) return n == 7;
+        long root = isqrt(n);
+        long[] inverse = t.inverse;
+        long[] bound = t.bound;
+        int[] primes = t.primes;
+        for (int i = 0; i < primes.length && primes[i] <= root; i++) {
+            // p | n  <=>  n · p^-1 (mod 2^64) <= (2^64 - 1) / p
+            if (Long.compareUnsigned(n * inverse[i], bound[i]) <= 0) return false;
+        }
+        return true;
+    }
+
+    private static final class Table {
+        final long limit;
+        final int[] primes;
+        final long[] inverse;
+        final long[] bound;
+
+        Table(long limit) {
+            this.limit = limit;
+            int count = limit < 11 ? 0 : (int) SegmentedSieve.countPrimes(11, limit);
+            this.primes = new int[count];
+            this.inverse = new long[count];
+            this.bound = new long[count];
+            if (count > 0) {
+                int[] k = {0};
+                SegmentedSieve.forEachPrime(11, limit, p -> {
+                    primes[k[0]] = (int) p;
+                    inverse[k[0]] = LongPrimality.inverse(p);
+                    bound[k[0]] = Long.divideUnsigned(-1L, p);
+                    k[0]++;
+                });
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * Wheel30.java
+ *
+ * Rueda módulo 30 = 2·3·5: de cada 30 números solo 8 pueden ser primos (mayores que 5),
+ * los de resto 1, 7, 11, 13, 17, 19, 23 y 29. Un byte representa un bloque de 30 números
+ * (bit i = resto RESIDUES[i]), es decir 30 números por byte en lugar de 16 (solo impares).
+ * La usan PrimeBitmap32 y las tablas en disco.
+ */
+final class Wheel30 {
+
+    /** Restos coprimos con 30, en orden. */
+    static final int[] RESIDUES = {1, 7, 11, 13, 17, 19, 23, 29};
+
+    /** Máscara del bit de cada resto módulo 30 (0 si el resto no es coprimo con 30). */
+    static final byte[] BIT_OF_RESIDUE = new byte[30];
+
+    /** Distancias entre restos consecutivos (la última vuelve a 31 = 1 + 30). */
+    static final int[] GAPS = {6, 4, 2, 4, 2, 4, 6, 2};
+
+    static {
+        for (int i = 0; i < RESIDUES.length; i++) {
+            BIT_OF_RESIDUE[RESIDUES[i]] = (byte) (1 << i);
+        }
+    }
+
+    private Wheel30() {
+    }
+
+    /** Bytes necesarios para representar [0, limit). */
+    static long bytesFor(long limit) {
+        return (limit + 29) / 30;
+    }
+
+    /** Número representado por el bit bit del byte index. */
+    static long valueOf(long index, int bit) {
+        return index * 30 + RESIDUES[bit];
+    }
+}
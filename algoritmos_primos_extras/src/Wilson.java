@@ -0,0 +1,258 @@
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Wilson.java
+ *
+ * Teorema de Wilson: p > 1 es primo ⇔ (p-1)! ≡ -1 (mod p).
+ * - (p-1)! mod p en aritmética long, en forma de Montgomery (LongPrimality) para todo p
+ *   impar < 2^63: i se lleva en forma de Montgomery sumando R mod p, sin conversión por paso.
+ *   Es ~1,4 veces más rápido que reducir con % (una división por paso), que queda solo
+ *   para módulos pares < 2^31.
+ * - Cuatro acumuladores independientes (i, i+1, i+2, i+3): las multiplicaciones de un paso
+ *   no dependen entre sí y el procesador las solapa.
+ * - Para n compuesto el producto llega a 0 (mod n) antes del final: se comprueba cada tanto
+ *   y se corta ahí.
+ * - Cada ZERO_CHECK pasos también se atiende la interrupción del hilo (cancelación y plazos de
+ *   PrimalityService).
+ * - Sigue siendo O(p) multiplicaciones: ya no hay un umbral que devuelva un resultado falso,
+ *   pero p de más de ~40 bits no termina en un tiempo razonable.
+ * - Cocientes de Wilson w_p = ((p-1)! + 1) / p mod p para todos los primos de un rango, con
+ *   un árbol de restos acumulativo (Costa, Gerbicz, Harvey): los factoriales se comparten
+ *   entre primos en lugar de recalcular cada uno desde 1.
+ */
+public final class Wilson {
+
+    /** Tamaño hasta el que Wilson termina en segundos (2^32 pasos de ~3 ns; guía del menú). */
+    public static final int PRACTICAL_BITS = 32;
+
+    private static final long INT_LIMIT = 1L << 31;
+    /**
+     * Hasta cuántos primos wilsonQuotients calcula cada (p-1)! mod p^2 por separado: el prefijo
+     * (p_0 - 1)! del árbol cuesta ~90 ns por número con BigInteger, unas 30 multiplicaciones de
+     * Montgomery, así que con pocos primos el cálculo directo O(p) es más rápido.
+     */
+    private static final int DIRECT_QUOTIENTS = 32;
+    /** Cada cuántos pasos se comprueba si el producto ya es 0 (y si el hilo fue interrumpido). */
+    private static final int ZERO_CHECK = 1 << 16;
+
+    private Wilson() {
+    }
+
+    /** Prueba de Wilson para n < 2^63. */
+    public static boolean isPrime(BigInteger n) {
+        if (n.bitLength() > 63) {
+            throw new IllegalArgumentException("Wilson: n debe ser < 2^63 (O(n) multiplicaciones): " + n);
+        }
+        return isPrime(n.longValue());
+    }
+
+    /** Prueba de Wilson; los negativos, 0 y 1 no son primos. */
+    public static boolean isPrime(long n) {
+        if (n < 2) return false;
+        if (n < 4) return true;
+        if ((n & 1) == 0) return false;
+        return factorialMod(n - 1, n) == n - 1;
+    }
+
+    /**
+     * k! mod m para 0 <= k y 1 <= m < 2^63 (m impar si m >= 2^31). Si el producto se anula
+     * antes de llegar a k, devuelve 0 sin seguir.
+     */
+    public static long factorialMod(long k, long m) {
+        if (k < 0 || m < 1) throw new IllegalArgumentException("se requiere k >= 0 y m >= 1");
+        if (m == 1 || k >= m) return 0;
+        if ((m & 1) != 0) return factorialModMont(k, m);
+        if (m < INT_LIMIT) return factorialModSmall(k, m);
+        throw new IllegalArgumentException("m >= 2^31 debe ser impar (Montgomery): " + m);
+    }
+
+    /** m par < 2^31: cada producto de dos residuos cabe en un long. */
+    private static long factorialModSmall(long k, long m) {
+        long a0 = 1, a1 = 1, a2 = 1, a3 = 1;
+        long i = 1;
+        while (i + 3 <= k) {
+            long blockEnd = Math.min(k - 3, i + ZERO_CHECK);
+            for (; i <= blockEnd; i += 4) {
+                a0 = a0 * i % m;
+                a1 = a1 * (i + 1) % m;
+                a2 = a2 * (i + 2) % m;
+                a3 = a3 * (i + 3) % m;
+            }
+            if (a0 == 0 || a1 == 0 || a2 == 0 || a3 == 0) return 0;
+            PrimalityService.checkInterrupted();
+        }
+        for (; i <= k; i++) a0 = a0 * i % m;
+        return a0 * a1 % m * (a2 * a3 % m) % m;
+    }
+
+    /** m impar < 2^63: todo en forma de Montgomery. */
+    private static long factorialModMont(long k, long m) {
+        long inv = LongPrimality.inverse(m);
+        long one = LongPrimality.oneMont(m);
+        long a0 = one, a1 = one, a2 = one, a3 = one;
+        // x0..x3 = i, i+1, i+2, i+3 en forma de Montgomery
+        long x0 = one;
+        long x1 = addMod(x0, one, m);
+        long x2 = addMod(x1, one, m);
+        long x3 = addMod(x2, one, m);
+        long four = addMod(addMod(one, one, m), addMod(one, one, m), m);
+        long i = 1;
+        while (i + 3 <= k) {
+            long blockEnd = Math.min(k - 3, i + ZERO_CHECK);
+            for (; i <= blockEnd; i += 4) {
+                a0 = LongPrimality.mulMont(a0, x0, m, inv);
+                a1 = LongPrimality.mulMont(a1, x1, m, inv);
+                a2 = LongPrimality.mulMont(a2, x2, m, inv);
+                a3 = LongPrimality.mulMont(a3, x3, m, inv);
+                x0 = addMod(x0, four, m);
+                x1 = addMod(x1, four, m);
+                x2 = addMod(x2, four, m);
+                x3 = addMod(x3, four, m);
+            }
+            if (a0 == 0 || a1 == 0 || a2 == 0 || a3 == 0) return 0;
+            PrimalityService.checkInterrupted();
+        }
+        for (; i <= k; i++) {
+            a0 = LongPrimality.mulMont(a0, x0, m, inv);
+            x0 = addMod(x0, one, m);
+        }
+        long product = LongPrimality.mulMont(LongPrimality.mulMont(a0, a1, m, inv),
+                LongPrimality.mulMont(a2, a3, m, inv), m, inv);
+        return LongPrimality.fromMont(product, m, inv);
+    }
+
+    /** (a + b) mod m para 0 <= a, b < m < 2^63 (la suma no desborda como unsigned). */
+    private static long addMod(long a, long b, long m) {
+        long s = a + b;
+        return Long.compareUnsigned(s, m) >= 0 ? s - m : s;
+    }
+
+    // ============================
+    // Cocientes de Wilson en lote
+    // ============================
+
+    /** Primos de un rango y su cociente de Wilson, en el mismo orden. */
+    public static final class Quotients {
+        private final long[] primes;
+        private final long[] quotients;
+
+        Quotients(long[] primes, long[] quotients) {
+            this.primes = primes;
+            this.quotients = quotients;
+        }
+
+        public int size() {
+            return primes.length;
+        }
+
+        public long prime(int i) {
+            return primes[i];
+        }
+
+        /** w_p = ((p-1)! + 1) / p mod p; vale 0 para los primos de Wilson (5, 13, 563). */
+        public long quotient(int i) {
+            return quotients[i];
+        }
+    }
+
+    /**
+     * Cocientes de Wilson de todos los primos p en [lo, hi] (hi < 2^31, así p^2 cabe en un long).
+     * Se calcula (p_k - 1)! mod p_k^2 para cada primo con un árbol de restos acumulativo:
+     * A_0 = (p_0 - 1)! y A_k = p_{k-1} · ... · (p_k - 1); cada nodo recibe el producto de los A
+     * anteriores reducido módulo el producto de los p^2 de su rango, y devuelve el producto de
+     * sus propios A solo módulo lo que necesita su padre (nunca el producto exacto).
+     * A_0 se calcula con un árbol de productos reducido módulo la raíz en cada nivel: el costo
+     * no depende de factoriales exactos de lo, sino de ~lo/256 productos del tamaño de la raíz.
+     * Con hasta DIRECT_QUOTIENTS primos se usa factorialMod para cada uno.
+     */
+    public static Quotients wilsonQuotients(long lo, long hi) {
+        if (lo > hi || hi >= INT_LIMIT) throw new IllegalArgumentException("se requiere lo <= hi < 2^31");
+        long[] primes = primesIn(Math.max(lo, 2), hi);
+        int count = primes.length;
+        long[] quotients = new long[count];
+        if (count <= DIRECT_QUOTIENTS) {
+            for (int k = 0; k < count; k++) {
+                long p = primes[k];
+                quotients[k] = ((factorialMod(p - 1, p * p) + 1) / p) % p;
+            }
+            return new Quotients(primes, quotients);
+        }
+
+        // árbol de productos de los módulos p^2 (nodo 1 = raíz, hijos 2i y 2i+1)
+        int size = Integer.highestOneBit(Math.max(1, count - 1)) * 2;
+        BigInteger[] moduli = new BigInteger[2 * size];
+        Arrays.fill(moduli, BigInteger.ONE);
+        for (int k = 0; k < count; k++) moduli[size + k] = BigInteger.valueOf(primes[k] * primes[k]);
+        for (int node = size - 1; node >= 1; node--) moduli[node] = moduli[2 * node].multiply(moduli[2 * node + 1]);
+
+        long[] factorials = new long[count];
+        BigInteger prefix = rangeProductMod(1, primes[0], moduli[1]);
+        accumulate(1, 0, size, prefix, null, primes, count, moduli, factorials);
+        for (int k = 0; k < count; k++) {
+            long p = primes[k];
+            // (p-1)! ≡ -1 (mod p): (f + 1) es múltiplo de p
+            quotients[k] = ((factorials[k] + 1) / p) % p;
+        }
+        return new Quotients(primes, quotients);
+    }
+
+    /**
+     * Nodo que cubre las hojas [from, to): v = (A_0 · ... · A_{from-1}) mod moduli[node] (A_0 ya
+     * incluido en v para from = 0). Guarda (p_k - 1)! mod p_k^2 de cada hoja y devuelve el
+     * producto de los A del nodo módulo out (null si nadie lo necesita, como en la raíz).
+     */
+    private static BigInteger accumulate(int node, int from, int to, BigInteger v, BigInteger out, long[] primes,
+                                         int count, BigInteger[] moduli, long[] factorials) {
+        if (from >= count) return out == null ? null : BigInteger.ONE;
+        if (to - from == 1) {
+            BigInteger a = from == 0 ? BigInteger.ONE : rangeProduct(primes[from - 1], primes[from]);
+            factorials[from] = v.multiply(a).mod(moduli[node]).longValue();
+            return out == null ? null : a.mod(out);
+        }
+        int mid = (from + to) >>> 1;
+        BigInteger leftV = v.mod(moduli[2 * node]);
+        if (mid >= count) return accumulate(2 * node, from, mid, leftV, out, primes, count, moduli, factorials);
+        // el hijo izquierdo se necesita módulo el del hermano (para su v) y módulo out (para el padre)
+        BigInteger rightModulus = moduli[2 * node + 1];
+        BigInteger leftOut = out == null ? rightModulus : rightModulus.multiply(out);
+        BigInteger left = accumulate(2 * node, from, mid, leftV, leftOut, primes, count, moduli, factorials);
+        BigInteger right = accumulate(2 * node + 1, mid, to, v.multiply(left).mod(rightModulus), out,
+                primes, count, moduli, factorials);
+        return out == null ? null : left.multiply(right).mod(out);
+    }
+
+    /** a · (a+1) · ... · (b-1) mod m, reduciendo en cada nivel del árbol de productos. */
+    static BigInteger rangeProductMod(long a, long b, BigInteger m) {
+        if (b - a <= 256) return rangeProduct(a, b).mod(m);
+        long mid = (a + b) >>> 1;
+        BigInteger product = rangeProductMod(a, mid, m).multiply(rangeProductMod(mid, b, m));
+        return product.bitLength() > m.bitLength() ? product.mod(m) : product;
+    }
+
+    /** a · (a+1) · ... · (b-1) por división binaria (productos de tamaños parecidos). */
+    static BigInteger rangeProduct(long a, long b) {
+        if (b - a <= 16) {
+            BigInteger r = BigInteger.ONE;
+            long acc = 1;
+            for (long i = a; i < b; i++) {
+                if (acc > Long.MAX_VALUE / i) {
+                    r = r.multiply(BigInteger.valueOf(acc));
+                    acc = 1;
+                }
+                acc *= i;
+            }
+            return r.multiply(BigInteger.valueOf(acc));
+        }
+        long mid = (a + b) >>> 1;
+        return rangeProduct(a, mid).multiply(rangeProduct(mid, b));
+    }
+
+    private static long[] primesIn(long lo, long hi) {
+        if (lo > hi) return new long[0];
+        long[] primes = new long[(int) Math.min(Integer.MAX_VALUE - 8, SegmentedSieve.countPrimes(lo, hi))];
+        int[] n = {0};
+        SegmentedSieve.forEachPrime(lo, hi, p -> primes[n[0]++] = p);
+        return primes;
+    }
+}
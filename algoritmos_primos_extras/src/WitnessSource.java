@@ -0,0 +1,128 @@
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * WitnessSource.java
+ *
+ * Origen de los testigos aleatorios de las pruebas probabilísticas (Fermat, Miller-Rabin,
+ * Solovay-Strassen, Lehmann). Tres variantes:
+ * - threadLocal(): ThreadLocalRandom, sin estado compartido entre hilos (por defecto).
+ * - seeded(seed): SplittableRandom, para benchmarks y pruebas reproducibles. Los testigos de
+ *   una prueba de n (random(n)) salen de un flujo derivado de (seed, n): no dependen del hilo
+ *   ni del orden, así que se reproducen también en un pool. random() da un flujo por hilo
+ *   (el primer hilo que lo usa recibe el flujo 0, ...): reproducible solo con un hilo.
+ * - secure(): un único SecureRandom; se sincroniza internamente, así que con varios hilos
+ *   es un cuello de botella. Solo cuando los testigos deben ser impredecibles.
+ * Se elige con PrimalityAllTests.setWitnessSource.
+ */
+public final class WitnessSource {
+
+    private static final WitnessSource THREAD_LOCAL = new WitnessSource("threadLocal", ThreadLocalRandom::current);
+
+    private final String name;
+    private final Supplier<Random> random;
+    /** Generador para los testigos de una prueba de n. */
+    private final Function<BigInteger, Random> perTest;
+
+    private WitnessSource(String name, Supplier<Random> random) {
+        this(name, random, n -> random.get());
+    }
+
+    private WitnessSource(String name, Supplier<Random> random, Function<BigInteger, Random> perTest) {
+        this.name = name;
+        this.random = random;
+        this.perTest = perTest;
+    }
+
+    public static WitnessSource threadLocal() {
+        return THREAD_LOCAL;
+    }
+
+    /**
+     * Flujos reproducibles: random(n) usa un SplittableRandom sembrado con (seed, n) en cada
+     * prueba (el mismo n recibe siempre los mismos testigos); random() uno por hilo, sembrado
+     * con (seed, índice del hilo).
+     */
+    public static WitnessSource seeded(long seed) {
+        AtomicLong streams = new AtomicLong();
+        ThreadLocal<Random> perThread = ThreadLocal.withInitial(() -> new SplittableSource(
+                new SplittableRandom(seed + 0x9E3779B97F4A7C15L * streams.getAndIncrement())));
+        return new WitnessSource("seeded(" + seed + ")", perThread::get,
+                n -> new SplittableSource(new SplittableRandom(seed * 0x9E3779B97F4A7C15L + n.hashCode())));
+    }
+
+    public static WitnessSource secure() {
+        SecureRandom shared = new SecureRandom();
+        return new WitnessSource("secure", () -> shared);
+    }
+
+    /** Generador a usar desde el hilo actual (no compartirlo con otros hilos). */
+    public Random random() {
+        return random.get();
+    }
+
+    /** Generador para los testigos de una prueba de n, desde el hilo actual. */
+    public Random random(BigInteger n) {
+        return perTest.apply(n);
+    }
+
+    /** Entero uniforme en [min, max] (ambos incluidos), por rechazo. */
+    public BigInteger uniform(BigInteger min, BigInteger max) {
+        return uniform(min, max, random.get());
+    }
+
+    /** Entero uniforme en [min, max] (ambos incluidos) con rnd, por rechazo. */
+    public static BigInteger uniform(BigInteger min, BigInteger max, Random rnd) {
+        BigInteger range = max.subtract(min).add(BigInteger.ONE); // inclusive
+        int bitLength = range.bitLength();
+        BigInteger r;
+        do {
+            r = new BigInteger(bitLength, rnd);
+        } while (r.compareTo(range) >= 0);
+        return r.add(min);
+    }
+
+    /** Busca por nombre: threadLocal, secure o seeded:SEMILLA. */
+    public static WitnessSource fromName(String name) {
+        if (name.equalsIgnoreCase("threadLocal")) return threadLocal();
+        if (name.equalsIgnoreCase("secure")) return secure();
+        if (name.regionMatches(true, 0, "seeded:", 0, 7)) return seeded(Long.parseLong(name.substring(7)));
+        throw new IllegalArgumentException("Origen de testigos desconocido: " + name);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    /** Random sobre un SplittableRandom (BigInteger(int, Random) necesita un java.util.Random). */
+    private static final class SplittableSource extends Random {
+        private static final long serialVersionUID = 1L;
+        private final transient SplittableRandom splittable;
+
+        SplittableSource(SplittableRandom splittable) {
+            this.splittable = splittable;
+        }
+
+        @Override
+        protected int next(int bits) {
+            return (int) (splittable.nextLong() >>> (64 - bits));
+        }
+
+        @Override
+        public int nextInt() {
+            return splittable.nextInt();
+        }
+
+        @Override
+        public long nextLong() {
+            return splittable.nextLong();
+        }
+    }
+}